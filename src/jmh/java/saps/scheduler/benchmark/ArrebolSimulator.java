@@ -0,0 +1,352 @@
+/* (C)2020 */
+package saps.scheduler.benchmark;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import saps.scheduler.core.SchedulerPropertiesUtil;
+
+/**
+ * Arrebol stand-in serving the endpoints the scheduler calls: the queue (with its waiting jobs),
+ * job submission, and job lookup by id, one at a time or in batch. Jobs wait in the queue for one
+ * of a fixed number of workers and then run for a duration drawn from a distribution. The
+ * simulation is advanced lazily on each request, so it costs nothing between requests and job
+ * times do not depend on when they are asked.
+ *
+ * <p>Each request waits for a configurable latency and fails with a configurable probability. The
+ * simulator also records, for each job, when the scheduler first saw it finished.
+ */
+public class ArrebolSimulator {
+
+  private static final Logger LOGGER = Logger.getLogger(ArrebolSimulator.class);
+
+  public static final String PORT = "simulator_port";
+  public static final String WORKERS = "simulator_workers";
+  public static final String LATENCY = "simulator_latency";
+  public static final String ERROR_RATE = "simulator_error_rate";
+  public static final String JOB_DURATION = "simulator_job_duration";
+  public static final String JOB_FAILURE_RATE = "simulator_job_failure_rate";
+
+  private static final int DEFAULT_PORT = 18080;
+  private static final int DEFAULT_WORKERS = 50;
+  private static final String DEFAULT_LATENCY = "uniform:5:20";
+  private static final String DEFAULT_JOB_DURATION = "lognormal:10000:5000";
+
+  private static final String QUEUES_PATH = "queues";
+  private static final String JOBS_PATH = "jobs";
+  private static final String ID = "id";
+  private static final String TASKS = "tasks";
+  private static final String COMMANDS = "commands";
+
+  private static final String QUEUED = "QUEUED";
+  private static final String RUNNING = "RUNNING";
+  private static final String FINISHED = "FINISHED";
+  private static final String FAILED = "FAILED";
+  private static final String UNSTARTED = "UNSTARTED";
+
+  private final int port;
+  private final int workers;
+  private final DurationDistribution latency;
+  private final double errorRate;
+  private final DurationDistribution jobDuration;
+  private final double jobFailureRate;
+
+  private final Random random;
+  private final Server server;
+  private final ConcurrentMap<String, SimulatedJob> jobs;
+  private final Deque<SimulatedJob> waitingJobs;
+  private final PriorityQueue<SimulatedJob> runningJobs;
+  private final AtomicLong jobIds;
+  private final AtomicLong requests;
+  private final AtomicLong injectedErrors;
+  private final List<Long> completionLatencies;
+  private long clock;
+
+  public ArrebolSimulator(Properties properties) {
+    this.port = SchedulerPropertiesUtil.getPositiveInt(properties, PORT, DEFAULT_PORT);
+    this.workers = SchedulerPropertiesUtil.getPositiveInt(properties, WORKERS, DEFAULT_WORKERS);
+    this.latency = DurationDistribution.parse(properties.getProperty(LATENCY, DEFAULT_LATENCY));
+    this.errorRate = Double.parseDouble(properties.getProperty(ERROR_RATE, "0"));
+    this.jobDuration =
+        DurationDistribution.parse(properties.getProperty(JOB_DURATION, DEFAULT_JOB_DURATION));
+    this.jobFailureRate = Double.parseDouble(properties.getProperty(JOB_FAILURE_RATE, "0"));
+
+    this.random = new Random(Fixtures.SEED);
+    this.jobs = new ConcurrentHashMap<String, SimulatedJob>();
+    this.waitingJobs = new ArrayDeque<SimulatedJob>();
+    this.runningJobs =
+        new PriorityQueue<SimulatedJob>(
+            11,
+            new Comparator<SimulatedJob>() {
+              @Override
+              public int compare(SimulatedJob job01, SimulatedJob job02) {
+                return Long.compare(job01.finishedAt, job02.finishedAt);
+              }
+            });
+    this.jobIds = new AtomicLong();
+    this.requests = new AtomicLong();
+    this.injectedErrors = new AtomicLong();
+    this.completionLatencies = new ArrayList<Long>();
+    this.clock = System.currentTimeMillis();
+    this.server =
+        new Server(
+            Protocol.HTTP,
+            port,
+            new Restlet() {
+              @Override
+              public void handle(Request request, Response response) {
+                ArrebolSimulator.this.handle(request, response);
+              }
+            });
+  }
+
+  public String getBaseUrl() {
+    return "http://127.0.0.1:" + port;
+  }
+
+  public void start() throws Exception {
+    server.start();
+    LOGGER.info(
+        "Arrebol simulator listening on " + getBaseUrl() + " with " + workers + " workers");
+  }
+
+  public void stop() throws Exception {
+    server.stop();
+  }
+
+  public long getRequests() {
+    return requests.get();
+  }
+
+  public long getInjectedErrors() {
+    return injectedErrors.get();
+  }
+
+  /**
+   * @return time from the submission of each job to the first response showing it finished, in
+   *     milliseconds, in the order the jobs were seen finished
+   */
+  public synchronized List<Long> getCompletionLatencies() {
+    return new ArrayList<Long>(completionLatencies);
+  }
+
+  private void handle(Request request, Response response) {
+    requests.incrementAndGet();
+
+    try {
+      Thread.sleep(nextLatency());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    if (nextErrorInjected()) {
+      injectedErrors.incrementAndGet();
+      response.setStatus(Status.SERVER_ERROR_INTERNAL, "Injected error");
+      return;
+    }
+
+    // Paths are /queues/{queue}, /queues/{queue}/jobs and /queues/{queue}/jobs/{job}
+    List<String> path = new ArrayList<String>();
+    for (String segment : request.getResourceRef().getPath().split("/"))
+      if (!segment.isEmpty()) path.add(segment);
+
+    if (path.size() < 2 || !path.get(0).equals(QUEUES_PATH)) {
+      response.setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+    } else if (path.size() == 2 && Method.GET.equals(request.getMethod())) {
+      respond(response, getQueue(path.get(1)));
+    } else if (path.size() == 3 && path.get(2).equals(JOBS_PATH)) {
+      if (Method.POST.equals(request.getMethod())) {
+        respond(response, submit(request));
+      } else {
+        String[] jobIds = request.getResourceRef().getQueryAsForm().getValuesArray(ID);
+        respond(response, getJobs(jobIds));
+      }
+    } else if (path.size() == 4 && path.get(2).equals(JOBS_PATH)) {
+      String job = getJob(path.get(3));
+      if (job == null) response.setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+      else respond(response, job);
+    } else {
+      response.setStatus(Status.CLIENT_ERROR_NOT_FOUND);
+    }
+  }
+
+  private static void respond(Response response, String json) {
+    response.setEntity(json, MediaType.APPLICATION_JSON);
+  }
+
+  private synchronized long nextLatency() {
+    return latency.sample(random);
+  }
+
+  private synchronized boolean nextErrorInjected() {
+    return random.nextDouble() < errorRate;
+  }
+
+  private synchronized String getQueue(String queueId) {
+    advance(System.currentTimeMillis());
+    return "{\"id\":\""
+        + queueId
+        + "\",\"waiting_jobs\":"
+        + waitingJobs.size()
+        + ",\"running_jobs\":"
+        + runningJobs.size()
+        + "}";
+  }
+
+  private String submit(Request request) {
+    JsonObject body = new JsonParser().parse(request.getEntityAsText()).getAsJsonObject();
+
+    // Only the number of commands is used, to report a status for each one
+    int commands = 0;
+    JsonElement tasks = body.get(TASKS);
+    if (tasks != null && tasks.isJsonArray()) {
+      for (JsonElement task : tasks.getAsJsonArray()) {
+        JsonElement taskCommands = task.getAsJsonObject().get(COMMANDS);
+        if (taskCommands != null && taskCommands.isJsonArray())
+          commands += taskCommands.getAsJsonArray().size();
+      }
+    }
+
+    SimulatedJob job = new SimulatedJob("sim-" + jobIds.incrementAndGet(), Math.max(1, commands));
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      advance(now);
+
+      job.submittedAt = now;
+      job.duration = jobDuration.sample(random);
+      job.failed = random.nextDouble() < jobFailureRate;
+      jobs.put(job.id, job);
+      waitingJobs.addLast(job);
+      advance(now);
+    }
+
+    return "{\"id\":\"" + job.id + "\"}";
+  }
+
+  private String getJob(String jobId) {
+    SimulatedJob job = jobs.get(jobId);
+    if (job == null) return null;
+
+    StringBuilder json = new StringBuilder();
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      advance(now);
+      appendJob(job, now, json);
+    }
+    return json.toString();
+  }
+
+  private String getJobs(String[] jobIds) {
+    StringBuilder json = new StringBuilder("[");
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      advance(now);
+
+      boolean first = true;
+      for (String jobId : jobIds) {
+        SimulatedJob job = jobs.get(jobId);
+        if (job == null) continue;
+
+        if (!first) json.append(',');
+        appendJob(job, now, json);
+        first = false;
+      }
+    }
+    return json.append(']').toString();
+  }
+
+  /**
+   * This function moves the simulation to the given time: jobs whose run ended leave their
+   * workers, which start the waiting jobs, in the order all of this happened.
+   */
+  private void advance(long now) {
+    while (true) {
+      while (runningJobs.size() < workers && !waitingJobs.isEmpty()) {
+        SimulatedJob job = waitingJobs.pollFirst();
+        job.startedAt = Math.max(clock, job.submittedAt);
+        job.finishedAt = job.startedAt + job.duration;
+        runningJobs.add(job);
+      }
+
+      SimulatedJob next = runningJobs.peek();
+      if (next == null || next.finishedAt > now) break;
+
+      runningJobs.poll();
+      clock = next.finishedAt;
+    }
+    clock = Math.max(clock, now);
+  }
+
+  private void appendJob(SimulatedJob job, long now, StringBuilder json) {
+    String jobState;
+    String commandState;
+    if (job.startedAt == 0) {
+      jobState = QUEUED;
+      commandState = UNSTARTED;
+    } else if (job.finishedAt > now) {
+      jobState = RUNNING;
+      commandState = RUNNING;
+    } else {
+      jobState = job.failed ? FAILED : FINISHED;
+      commandState = job.failed ? FAILED : FINISHED;
+      if (job.seenFinishedAt == 0) {
+        job.seenFinishedAt = now;
+        completionLatencies.add(now - job.submittedAt);
+      }
+    }
+
+    json.append("{\"id\":\"")
+        .append(job.id)
+        .append("\",\"job_state\":\"")
+        .append(jobState)
+        .append("\",\"tasks\":[{\"state\":\"")
+        .append(jobState)
+        .append("\",\"task_spec\":{\"commands\":[");
+    for (int i = 0; i < job.commands; i++) {
+      if (i > 0) json.append(',');
+      json.append("{\"state\":\"").append(commandState).append("\",\"exit_code\":");
+      if (commandState.equals(FINISHED)) json.append(0);
+      else if (commandState.equals(FAILED)) json.append(1);
+      else json.append("null");
+      json.append('}');
+    }
+    json.append("]}}]}");
+  }
+
+  private static class SimulatedJob {
+
+    private final String id;
+    private final int commands;
+    private long submittedAt;
+    private long duration;
+    private boolean failed;
+    private long startedAt;
+    private long finishedAt;
+    private long seenFinishedAt;
+
+    SimulatedJob(String id, int commands) {
+      this.id = id;
+      this.commands = commands;
+    }
+  }
+}
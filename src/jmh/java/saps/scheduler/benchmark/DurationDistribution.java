@@ -0,0 +1,85 @@
+/* (C)2020 */
+package saps.scheduler.benchmark;
+
+import java.util.Random;
+
+/**
+ * Distribution of durations in milliseconds, written as type:parameters:
+ *
+ * <ul>
+ *   <li>fixed:millis
+ *   <li>uniform:min_millis:max_millis
+ *   <li>exponential:mean_millis
+ *   <li>lognormal:mean_millis:stddev_millis
+ * </ul>
+ */
+public abstract class DurationDistribution {
+
+  private static final String SEPARATOR = ":";
+
+  /** @return a duration in milliseconds, never negative */
+  public abstract long sample(Random random);
+
+  /**
+   * This function parses a distribution in the type:parameters format.
+   *
+   * @param distribution distribution to be parsed
+   * @return distribution parsed
+   * @throws IllegalArgumentException if the distribution is not in the expected format
+   */
+  public static DurationDistribution parse(final String distribution) {
+    String[] parts = distribution.trim().split(SEPARATOR);
+
+    try {
+      if (parts[0].equals("fixed") && parts.length == 2) {
+        final long millis = Long.parseLong(parts[1]);
+        return new DurationDistribution() {
+          @Override
+          public long sample(Random random) {
+            return millis;
+          }
+        };
+      }
+
+      if (parts[0].equals("uniform") && parts.length == 3) {
+        final long min = Long.parseLong(parts[1]);
+        final long max = Long.parseLong(parts[2]);
+        if (max < min) throw new IllegalArgumentException("Max is lower than min");
+        return new DurationDistribution() {
+          @Override
+          public long sample(Random random) {
+            return min + (long) (random.nextDouble() * (max - min));
+          }
+        };
+      }
+
+      if (parts[0].equals("exponential") && parts.length == 2) {
+        final double mean = Double.parseDouble(parts[1]);
+        return new DurationDistribution() {
+          @Override
+          public long sample(Random random) {
+            return (long) (-mean * Math.log(1 - random.nextDouble()));
+          }
+        };
+      }
+
+      if (parts[0].equals("lognormal") && parts.length == 3) {
+        double mean = Double.parseDouble(parts[1]);
+        double stddev = Double.parseDouble(parts[2]);
+        final double sigma = Math.sqrt(Math.log(1 + (stddev * stddev) / (mean * mean)));
+        final double mu = Math.log(mean) - sigma * sigma / 2;
+        return new DurationDistribution() {
+          @Override
+          public long sample(Random random) {
+            return (long) Math.exp(mu + sigma * random.nextGaussian());
+          }
+        };
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "Duration distribution [" + distribution + "] is invalid", e);
+    }
+
+    throw new IllegalArgumentException("Duration distribution [" + distribution + "] is invalid");
+  }
+}
@@ -0,0 +1,75 @@
+/* (C)2020 */
+package saps.scheduler.benchmark;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.common.utils.SapsPropertiesConstants;
+
+/** Data shared by the benchmarks, generated from a fixed seed so runs can be compared. */
+public class Fixtures {
+
+  public static final long SEED = 42;
+
+  private static final int MAX_PRIORITY = 3;
+  private static final long MAX_TASK_AGE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+  /**
+   * This function creates tasks spread evenly among the users, each one in a state drawn from the
+   * given ones, with a random priority and creation time within the last week.
+   *
+   * @param count number of tasks
+   * @param users number of users
+   * @param states states the tasks may be in
+   * @param random source of the random values
+   * @return tasks created
+   */
+  public static List<SapsImage> createTasks(
+      int count, int users, List<ImageTaskState> states, Random random) {
+    List<SapsImage> tasks = new ArrayList<SapsImage>(count);
+    long now = System.currentTimeMillis();
+
+    for (int i = 0; i < count; i++) {
+      Timestamp creationTime =
+          new Timestamp(now - (long) (random.nextDouble() * MAX_TASK_AGE_MILLIS));
+      tasks.add(
+          new SapsImage(
+              "task-" + i,
+              "landsat_8",
+              "215065",
+              new Date(now),
+              states.get(random.nextInt(states.size())),
+              SapsImage.NONE_ARREBOL_JOB_ID,
+              "local",
+              random.nextInt(MAX_PRIORITY),
+              "user-" + (i % users) + "@saps",
+              "default",
+              "sha256:0",
+              "default",
+              "sha256:0",
+              "default",
+              "sha256:0",
+              creationTime,
+              creationTime,
+              SapsImage.AVAILABLE,
+              SapsImage.NON_EXISTENT_DATA));
+    }
+
+    return tasks;
+  }
+
+  /** @return the smallest properties {@link saps.scheduler.core.DefaultScheduler} accepts */
+  public static Properties createSchedulerProperties() {
+    Properties properties = new Properties();
+    properties.setProperty(SapsPropertiesConstants.IMAGE_DATASTORE_IP, "127.0.0.1");
+    properties.setProperty(SapsPropertiesConstants.IMAGE_DATASTORE_PORT, "5432");
+    properties.setProperty(SapsPropertiesConstants.ARREBOL_BASE_URL, "http://127.0.0.1:8080");
+    return properties;
+  }
+}
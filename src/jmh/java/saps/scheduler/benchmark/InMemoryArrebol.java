@@ -0,0 +1,128 @@
+/* (C)2020 */
+package saps.scheduler.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import saps.common.core.dto.JobResponseDTO;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.SapsJob;
+import saps.scheduler.core.arrebol.Arrebol;
+import saps.scheduler.core.arrebol.JobStatus;
+import saps.scheduler.core.arrebol.JobSubmitted;
+
+/**
+ * Arrebol answering from memory, so the benchmarks measure the scheduler and not the network.
+ * Every job is reported in the same state, running by default, with a single command. Jobs are
+ * only known by their status: the full job responses are never found.
+ */
+public class InMemoryArrebol implements Arrebol {
+
+  private static final String RUNNING = "RUNNING";
+
+  private final ConcurrentMap<String, JobSubmitted> submittedJobs;
+  private final AtomicLong jobIds;
+  private volatile int freeSlots;
+  private volatile String jobState;
+
+  public InMemoryArrebol(int freeSlots) {
+    this.submittedJobs = new ConcurrentHashMap<String, JobSubmitted>();
+    this.jobIds = new AtomicLong();
+    this.freeSlots = freeSlots;
+    this.jobState = RUNNING;
+  }
+
+  public void setFreeSlots(int freeSlots) {
+    this.freeSlots = freeSlots;
+  }
+
+  /** @param jobState state reported for every job, as in the Arrebol job_state field */
+  public void setJobState(String jobState) {
+    this.jobState = jobState;
+  }
+
+  @Override
+  public String addJob(SapsJob job) {
+    return "job-" + jobIds.incrementAndGet();
+  }
+
+  @Override
+  public boolean removeJob(JobSubmitted job) {
+    return submittedJobs.remove(job.getJobId()) != null;
+  }
+
+  @Override
+  public void addJobInList(JobSubmitted newJob) {
+    submittedJobs.put(newJob.getJobId(), newJob);
+  }
+
+  @Override
+  public JobSubmitted getJobSubmitted(String jobId) {
+    return submittedJobs.get(jobId);
+  }
+
+  @Override
+  public void populateJobList(List<SapsImage> taskList) {
+    for (SapsImage task : taskList)
+      addJobInList(new JobSubmitted(task.getArrebolJobId(), task));
+  }
+
+  @Override
+  public List<JobSubmitted> returnAllJobsSubmitted() {
+    return new ArrayList<JobSubmitted>(submittedJobs.values());
+  }
+
+  @Override
+  public int countJobsSubmitted() {
+    return submittedJobs.size();
+  }
+
+  @Override
+  public JobResponseDTO checkStatusJobById(String jobId) {
+    return null;
+  }
+
+  @Override
+  public List<JobStatus> checkStatusJobsById(List<String> jobIds) {
+    String state = jobState;
+    String commandState = RUNNING.equals(state) ? RUNNING : state;
+    Integer exitCode = RUNNING.equals(state) ? null : 0;
+
+    List<JobStatus> jobs = new ArrayList<JobStatus>(jobIds.size());
+    for (String jobId : jobIds) {
+      if (!submittedJobs.containsKey(jobId)) continue;
+      jobs.add(
+          new JobStatus(
+              jobId,
+              state,
+              Collections.singletonList(new JobStatus.CommandStatus(commandState, exitCode))));
+    }
+    return jobs;
+  }
+
+  @Override
+  public List<JobResponseDTO> checkStatusJobByName(String jobName) {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public String checkStatusJobString(String jobId) {
+    return null;
+  }
+
+  @Override
+  public int getCountSlotsInQueue(String queueId) {
+    return freeSlots;
+  }
+
+  @Override
+  public int getCountSlots() {
+    return freeSlots;
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,89 @@
+/* (C)2020 */
+package saps.scheduler.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.scheduler.core.catalog.TaskSelectionQuery;
+import saps.scheduler.core.catalog.TaskWriteBatch;
+import saps.scheduler.core.catalog.TaskWriter;
+import saps.scheduler.core.selector.TasksByUser;
+
+/**
+ * Catalog tasks kept in memory, standing for the Catalog queries and writes of the scheduler. The
+ * tasks are sorted once in the scheduling order, so a selection is a single scan, as with the
+ * Catalog index; when tasks age, they are sorted again for each selection. Writes only count the
+ * changes, which the scheduler already applied to the tasks.
+ */
+public class InMemoryTaskStore implements TaskSelectionQuery, TaskWriter {
+
+  private final List<SapsImage> tasks;
+  private final AtomicLong writes;
+
+  public InMemoryTaskStore(List<SapsImage> tasks) {
+    this.tasks = new ArrayList<SapsImage>(tasks);
+    Collections.sort(this.tasks, TasksByUser.SCHEDULING_ORDER);
+    this.writes = new AtomicLong();
+  }
+
+  public synchronized List<SapsImage> getTasks() {
+    return new ArrayList<SapsImage>(tasks);
+  }
+
+  public long getWrites() {
+    return writes.get();
+  }
+
+  @Override
+  public synchronized List<SapsImage> getSelectableTasks(
+      List<ImageTaskState> states, int limitPerUser, long agedBefore) {
+    List<SapsImage> orderedTasks = tasks;
+    if (agedBefore > 0) {
+      orderedTasks = new ArrayList<SapsImage>(tasks);
+      Collections.sort(orderedTasks, TasksByUser.schedulingOrder(agedBefore));
+    }
+
+    Map<ImageTaskState, Map<String, Integer>> countsByState =
+        new EnumMap<ImageTaskState, Map<String, Integer>>(ImageTaskState.class);
+    for (ImageTaskState state : states) countsByState.put(state, new HashMap<String, Integer>());
+
+    List<SapsImage> selectableTasks = new ArrayList<SapsImage>();
+    for (SapsImage task : orderedTasks) {
+      Map<String, Integer> counts = countsByState.get(task.getState());
+      if (counts == null) continue;
+
+      Integer count = counts.get(task.getUser());
+      if (count == null) count = 0;
+      if (count >= limitPerUser) continue;
+
+      counts.put(task.getUser(), count + 1);
+      selectableTasks.add(task);
+    }
+
+    return selectableTasks;
+  }
+
+  @Override
+  public TaskWriteBatch newBatch() {
+    return new TaskWriteBatch() {
+      @Override
+      public void updateState(SapsImage task) {
+        writes.incrementAndGet();
+      }
+
+      @Override
+      public void addTimestamp(SapsImage task) {
+        writes.incrementAndGet();
+      }
+
+      @Override
+      public void flush() {}
+    };
+  }
+}
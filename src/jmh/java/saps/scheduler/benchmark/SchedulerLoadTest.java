@@ -0,0 +1,240 @@
+/* (C)2020 */
+package saps.scheduler.benchmark;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.common.utils.ExecutionScriptTagUtil;
+import saps.common.utils.SapsPropertiesConstants;
+import saps.scheduler.core.DefaultScheduler;
+import saps.scheduler.core.SchedulerPropertiesConstants;
+import saps.scheduler.core.SchedulerPropertiesUtil;
+import saps.scheduler.core.arrebol.DefaultArrebol;
+import saps.scheduler.core.selector.DefaultRoundRobin;
+import saps.scheduler.core.selector.Selector;
+import saps.scheduler.core.selector.WeightedFairShareSelector;
+
+/**
+ * Load and soak test of the scheduler against the {@link ArrebolSimulator}: created tasks are kept
+ * in an in-memory Catalog and driven by {@link DefaultScheduler} through the whole workflow, over
+ * HTTP, until every task is finished or failed (or the timeout passes). It then reports the job
+ * throughput and the percentiles of the time from the submission of each job to the scheduler
+ * seeing it finished.
+ *
+ * <p>Arguments are key=value pairs, with the keys of this class, of the simulator and of the
+ * scheduler configuration file, e.g. {@code load_tasks=5000 simulator_workers=100
+ * simulator_job_duration=exponential:5000 arrebol_max_waiting_jobs=200}.
+ */
+public class SchedulerLoadTest {
+
+  private static final Logger LOGGER = Logger.getLogger(SchedulerLoadTest.class);
+
+  public static final String TASKS = "load_tasks";
+  public static final String USERS = "load_users";
+  public static final String TIMEOUT = "load_timeout_seconds";
+  public static final String SUBMISSION_PERIOD = "load_submission_period_millis";
+  public static final String CHECKER_PERIOD = "load_checker_period_millis";
+
+  private static final int DEFAULT_TASKS = 1000;
+  private static final int DEFAULT_USERS = 10;
+  private static final long DEFAULT_TIMEOUT_SECONDS = 600;
+  private static final long DEFAULT_PERIOD_MILLIS = 1000;
+  private static final long PROGRESS_PERIOD_MILLIS = 10000;
+
+  private static final String EXECUTION_SCRIPT_TAG = "default";
+  private static final String WEIGHTED_FAIR_SHARE_SELECTOR = "weighted_fair_share";
+
+  public static void main(String[] args) throws Exception {
+    Properties properties = Fixtures.createSchedulerProperties();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (separator <= 0)
+        throw new IllegalArgumentException("Argument [" + arg + "] is not key=value");
+      properties.setProperty(arg.substring(0, separator), arg.substring(separator + 1));
+    }
+
+    int taskCount = SchedulerPropertiesUtil.getPositiveInt(properties, TASKS, DEFAULT_TASKS);
+    int userCount = SchedulerPropertiesUtil.getPositiveInt(properties, USERS, DEFAULT_USERS);
+    long timeout =
+        TimeUnit.SECONDS.toMillis(
+            SchedulerPropertiesUtil.getLong(properties, TIMEOUT, DEFAULT_TIMEOUT_SECONDS));
+    long submissionPeriod =
+        SchedulerPropertiesUtil.getLong(properties, SUBMISSION_PERIOD, DEFAULT_PERIOD_MILLIS);
+    long checkerPeriod =
+        SchedulerPropertiesUtil.getLong(properties, CHECKER_PERIOD, DEFAULT_PERIOD_MILLIS);
+
+    ArrebolSimulator simulator = new ArrebolSimulator(properties);
+    properties.setProperty(SapsPropertiesConstants.ARREBOL_BASE_URL, simulator.getBaseUrl());
+    System.setProperty(
+        DefaultScheduler.EXECUTION_TAGS_FILE_PATH_KEY, createExecutionScriptTagsFile().getPath());
+
+    InMemoryTaskStore store =
+        new InMemoryTaskStore(
+            Fixtures.createTasks(
+                taskCount,
+                userCount,
+                Collections.singletonList(ImageTaskState.CREATED),
+                new Random(Fixtures.SEED)));
+    final DefaultScheduler scheduler =
+        new DefaultScheduler(
+            properties,
+            null,
+            store,
+            store,
+            new DefaultArrebol(properties),
+            createSelector(properties));
+
+    simulator.start();
+    ScheduledExecutorService executor = Executors.newScheduledThreadPool(2);
+    executor.scheduleWithFixedDelay(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              scheduler.schedule();
+            } catch (Throwable e) {
+              LOGGER.error("Error while running submission cycle", e);
+            }
+          }
+        },
+        0,
+        submissionPeriod,
+        TimeUnit.MILLISECONDS);
+    executor.scheduleWithFixedDelay(
+        new Runnable() {
+          @Override
+          public void run() {
+            try {
+              scheduler.checker();
+            } catch (Throwable e) {
+              LOGGER.error("Error while running checker sweep", e);
+            }
+          }
+        },
+        0,
+        checkerPeriod,
+        TimeUnit.MILLISECONDS);
+
+    long start = System.currentTimeMillis();
+    long lastProgress = start;
+    Map<ImageTaskState, Integer> tasksByState = countByState(store.getTasks());
+    while (getDone(tasksByState) < taskCount && System.currentTimeMillis() - start < timeout) {
+      Thread.sleep(Math.min(submissionPeriod, checkerPeriod));
+      tasksByState = countByState(store.getTasks());
+
+      if (System.currentTimeMillis() - lastProgress >= PROGRESS_PERIOD_MILLIS) {
+        System.out.println("Tasks by state: " + tasksByState);
+        lastProgress = System.currentTimeMillis();
+      }
+    }
+    long elapsed = System.currentTimeMillis() - start;
+
+    executor.shutdownNow();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    scheduler.close();
+    simulator.stop();
+
+    report(taskCount, tasksByState, elapsed, simulator, store);
+    System.exit(0);
+  }
+
+  private static Selector createSelector(Properties properties) {
+    String selector = properties.getProperty(SchedulerPropertiesConstants.SELECTOR, "");
+    if (selector.trim().equals(WEIGHTED_FAIR_SHARE_SELECTOR))
+      return new WeightedFairShareSelector(properties);
+    return new DefaultRoundRobin();
+  }
+
+  /** Every task of the fixtures uses the same tag, whose image is never pulled by the simulator. */
+  private static File createExecutionScriptTagsFile() throws Exception {
+    String tag =
+        "[{\"name\":\""
+            + EXECUTION_SCRIPT_TAG
+            + "\",\"docker_tag\":\""
+            + EXECUTION_SCRIPT_TAG
+            + "\",\"docker_repository\":\"fogbow/simulated\","
+            + "\"memory_usage\":\"1G\",\"cpu_usage\":\"1000m\"}]";
+    String tags =
+        "{\""
+            + ExecutionScriptTagUtil.INPUT_DOWNLOADER
+            + "\":"
+            + tag
+            + ",\""
+            + ExecutionScriptTagUtil.PRE_PROCESSING
+            + "\":"
+            + tag
+            + ",\""
+            + ExecutionScriptTagUtil.PROCESSING
+            + "\":"
+            + tag
+            + "}";
+
+    File tagsFile = File.createTempFile("execution_script_tags", ".json");
+    tagsFile.deleteOnExit();
+    Files.write(tagsFile.toPath(), tags.getBytes(StandardCharsets.UTF_8));
+    return tagsFile;
+  }
+
+  private static Map<ImageTaskState, Integer> countByState(List<SapsImage> tasks) {
+    Map<ImageTaskState, Integer> tasksByState =
+        new EnumMap<ImageTaskState, Integer>(ImageTaskState.class);
+    for (SapsImage task : tasks) {
+      Integer count = tasksByState.get(task.getState());
+      tasksByState.put(task.getState(), count == null ? 1 : count + 1);
+    }
+    return tasksByState;
+  }
+
+  private static int getDone(Map<ImageTaskState, Integer> tasksByState) {
+    Integer finished = tasksByState.get(ImageTaskState.FINISHED);
+    Integer failed = tasksByState.get(ImageTaskState.FAILED);
+    return (finished == null ? 0 : finished) + (failed == null ? 0 : failed);
+  }
+
+  private static void report(
+      int taskCount,
+      Map<ImageTaskState, Integer> tasksByState,
+      long elapsed,
+      ArrebolSimulator simulator,
+      InMemoryTaskStore store) {
+    List<Long> latencies = simulator.getCompletionLatencies();
+    Collections.sort(latencies);
+    double minutes = elapsed / (double) TimeUnit.MINUTES.toMillis(1);
+
+    System.out.println("Run of " + taskCount + " tasks took " + elapsed + " ms");
+    System.out.println("Tasks by state: " + tasksByState);
+    System.out.printf(
+        "Jobs completed: %d (%.1f jobs/min)%n", latencies.size(), latencies.size() / minutes);
+    System.out.printf(
+        "Submit to completion (ms): p50=%d p90=%d p99=%d max=%d%n",
+        percentile(latencies, 50),
+        percentile(latencies, 90),
+        percentile(latencies, 99),
+        percentile(latencies, 100));
+    System.out.printf(
+        "Arrebol requests: %d (%.1f per job), %d injected errors%n",
+        simulator.getRequests(),
+        latencies.isEmpty() ? 0.0 : simulator.getRequests() / (double) latencies.size(),
+        simulator.getInjectedErrors());
+    System.out.println("Catalog writes: " + store.getWrites());
+  }
+
+  /** Nearest rank percentile of values in increasing order (0 if there are no values). */
+  private static long percentile(List<Long> sortedValues, double percentile) {
+    if (sortedValues.isEmpty()) return 0;
+    int rank = (int) Math.ceil(percentile / 100 * sortedValues.size());
+    return sortedValues.get(Math.max(1, Math.min(sortedValues.size(), rank)) - 1);
+  }
+}
@@ -0,0 +1,129 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.scheduler.benchmark.Fixtures;
+import saps.scheduler.benchmark.InMemoryArrebol;
+import saps.scheduler.benchmark.InMemoryTaskStore;
+import saps.scheduler.core.arrebol.JobSubmitted;
+import saps.scheduler.core.selector.DefaultRoundRobin;
+
+/**
+ * Submission and checker cycles of {@link DefaultScheduler} over an in-memory Catalog and Arrebol,
+ * so only the scheduler work is measured. Both cycles leave the tasks as they found them: the
+ * selection does not submit, and the checker finds every job still running.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchedulerCycleBenchmark {
+
+  private static final List<ImageTaskState> SCHEDULABLE_STATES =
+      Arrays.asList(ImageTaskState.CREATED, ImageTaskState.DOWNLOADED, ImageTaskState.READY);
+  private static final List<ImageTaskState> SUBMITTED_STATES =
+      Arrays.asList(
+          ImageTaskState.DOWNLOADING, ImageTaskState.PREPROCESSING, ImageTaskState.RUNNING);
+  private static final int CHECKER_USERS = 100;
+
+  @State(Scope.Benchmark)
+  public static class Selection {
+
+    @Param({"1000", "100000", "1000000"})
+    public int tasks;
+
+    @Param({"10", "1000", "10000"})
+    public int users;
+
+    @Param({"1000"})
+    public int slots;
+
+    private DefaultScheduler scheduler;
+
+    @Setup
+    public void setUp() {
+      InMemoryTaskStore store =
+          new InMemoryTaskStore(
+              Fixtures.createTasks(tasks, users, SCHEDULABLE_STATES, new Random(Fixtures.SEED)));
+      scheduler =
+          new DefaultScheduler(
+              Fixtures.createSchedulerProperties(),
+              null,
+              store,
+              store,
+              new InMemoryArrebol(slots),
+              new DefaultRoundRobin());
+    }
+
+    @TearDown
+    public void tearDown() {
+      scheduler.close();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class Checker {
+
+    @Param({"100", "1000", "10000"})
+    public int submittedJobs;
+
+    private DefaultScheduler scheduler;
+
+    @Setup
+    public void setUp() {
+      InMemoryTaskStore store =
+          new InMemoryTaskStore(
+              Fixtures.createTasks(
+                  submittedJobs, CHECKER_USERS, SUBMITTED_STATES, new Random(Fixtures.SEED)));
+      InMemoryArrebol arrebol = new InMemoryArrebol(0);
+
+      for (SapsImage task : store.getTasks()) {
+        String jobId = "job-" + task.getTaskId();
+        task.setArrebolJobId(jobId);
+        arrebol.addJobInList(new JobSubmitted(jobId, task));
+      }
+
+      scheduler =
+          new DefaultScheduler(
+              Fixtures.createSchedulerProperties(),
+              null,
+              store,
+              store,
+              arrebol,
+              new DefaultRoundRobin());
+    }
+
+    @TearDown
+    public void tearDown() {
+      scheduler.close();
+    }
+  }
+
+  @Benchmark
+  public List<SapsImage> selectTasks(Selection selection) {
+    return selection.scheduler.selectTasks();
+  }
+
+  @Benchmark
+  public void checker(Checker checker) {
+    checker.scheduler.checker();
+  }
+}
@@ -0,0 +1,136 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.entity.StringEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saps.common.core.dto.JobResponseDTO;
+import saps.common.core.model.SapsJob;
+import saps.common.core.model.SapsTask;
+
+/**
+ * JSON handled by {@link ArrebolRequestsHelper}: the job list returned by Arrebol, read with the
+ * streaming {@link JobStatusParser} and, for comparison, bound to {@link JobResponseDTO} with
+ * Gson, and the body of a job submission.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ArrebolJsonBenchmark {
+
+  private static final int COMMANDS_PER_JOB = 4;
+
+  @Param({"1", "100", "1000"})
+  public int jobs;
+
+  private byte[] jobList;
+  private Gson gson;
+  private ArrebolRequestsHelper requestsHelper;
+  private SapsJob job;
+
+  @Setup
+  public void setUp() {
+    jobList = createJobList(jobs).getBytes(StandardCharsets.UTF_8);
+    gson = new Gson();
+    // The job body is built without going to Arrebol, so no transport is needed
+    requestsHelper =
+        new ArrebolRequestsHelper(
+            "http://127.0.0.1:8080", ArrebolRequestsHelper.DEFAULT_QUEUE_ID, null);
+    job = createJob();
+  }
+
+  @Benchmark
+  public List<JobStatus> parseJobStatuses() throws Exception {
+    return JobStatusParser.parseJobs(
+        new JsonReader(
+            new InputStreamReader(new ByteArrayInputStream(jobList), StandardCharsets.UTF_8)));
+  }
+
+  @Benchmark
+  public JobResponseDTO[] bindJobResponses() {
+    return gson.fromJson(
+        new InputStreamReader(new ByteArrayInputStream(jobList), StandardCharsets.UTF_8),
+        JobResponseDTO[].class);
+  }
+
+  @Benchmark
+  public StringEntity makeJobBody() throws UnsupportedEncodingException {
+    return requestsHelper.makeJSONBody(job);
+  }
+
+  private static String createJobList(int jobs) {
+    StringBuilder json = new StringBuilder("[");
+
+    for (int i = 0; i < jobs; i++) {
+      if (i > 0) json.append(',');
+      json.append("{\"id\":\"job-")
+          .append(i)
+          .append("\",\"label\":\"task-")
+          .append(i)
+          .append("\",\"job_state\":\"RUNNING\",\"tasks\":[{\"id\":\"task-")
+          .append(i)
+          .append("\",\"state\":\"RUNNING\",\"task_spec\":{\"id\":\"task-")
+          .append(i)
+          .append("\",\"requirements\":{\"image\":\"fogbow/processing:default\"},")
+          .append("\"commands\":[");
+
+      for (int command = 0; command < COMMANDS_PER_JOB; command++) {
+        if (command > 0) json.append(',');
+        json.append("{\"command\":\"bash /home/saps/run.sh ")
+            .append(command)
+            .append("\",\"state\":\"")
+            .append(command == 0 ? "FINISHED" : "UNSTARTED")
+            .append("\",\"exit_code\":")
+            .append(command == 0 ? "0" : "null")
+            .append('}');
+      }
+
+      json.append("],\"metadata\":{}}}]}");
+    }
+
+    return json.append(']').toString();
+  }
+
+  private static SapsJob createJob() {
+    Map<String, String> requirements = new HashMap<String, String>();
+    requirements.put("image", "fogbow/processing@sha256:0");
+    requirements.put("RAMUsage", "1024");
+    requirements.put("CPUUsage", "1");
+
+    List<String> commands = new ArrayList<String>();
+    for (int command = 0; command < COMMANDS_PER_JOB; command++)
+      commands.add("bash /home/saps/run.sh " + command);
+
+    SapsTask task =
+        new SapsTask(
+            "task-0#fogbow/processing@sha256:0",
+            requirements,
+            commands,
+            new HashMap<String, String>());
+    return new SapsJob("task-0", Collections.singletonList(task));
+  }
+}
@@ -0,0 +1,75 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.http;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.BasicResponseHandler;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import saps.scheduler.benchmark.ArrebolSimulator;
+import saps.scheduler.core.arrebol.ArrebolRequestsHelper;
+
+/**
+ * Requests per second to the {@link ArrebolSimulator}, answering without latency, through the
+ * pooled {@link HttpWrapper} and, for comparison, through a new HTTP client per request, as Arrebol
+ * was reached before the transport was pooled. Every request looks up the queue where the jobs are
+ * submitted, so only the transport is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class HttpWrapperBenchmark {
+
+  private static final String SIMULATOR_PORT = "18081";
+
+  private ArrebolSimulator simulator;
+  private HttpWrapper httpWrapper;
+  private String queueEndpoint;
+
+  @Setup
+  public void setUp() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty(ArrebolSimulator.PORT, SIMULATOR_PORT);
+    properties.setProperty(ArrebolSimulator.LATENCY, "fixed:0");
+
+    simulator = new ArrebolSimulator(properties);
+    simulator.start();
+    httpWrapper = new HttpWrapper(properties);
+    queueEndpoint = simulator.getBaseUrl() + "/queues/" + ArrebolRequestsHelper.DEFAULT_QUEUE_ID;
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    httpWrapper.close();
+    simulator.stop();
+  }
+
+  @Benchmark
+  public String pooledClient() throws Exception {
+    return httpWrapper.doRequest(HttpGet.METHOD_NAME, queueEndpoint, null);
+  }
+
+  @Benchmark
+  public String clientPerRequest() throws Exception {
+    try (CloseableHttpClient client = HttpClients.createMinimal()) {
+      return client.execute(new HttpGet(queueEndpoint), new BasicResponseHandler());
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/* (C)2020 */
+package saps.scheduler.core.selector;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.scheduler.benchmark.Fixtures;
+
+/**
+ * Grouping of the tasks of a state by user (the work of {@code DefaultScheduler.mapUsers2Tasks})
+ * and selection of the tasks to fill the free slots. The selectors consume the grouped lists, so
+ * each selection benchmark groups the tasks again, as the scheduler does in every cycle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectorBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  public int tasks;
+
+  @Param({"10", "1000", "10000"})
+  public int users;
+
+  @Param({"1000"})
+  public int slots;
+
+  private List<SapsImage> readyTasks;
+  private TasksByUser tasksByUser;
+  private Selector roundRobin;
+  private Selector weightedFairShare;
+
+  @Setup
+  public void setUp() {
+    readyTasks =
+        Fixtures.createTasks(
+            tasks,
+            users,
+            Collections.singletonList(ImageTaskState.READY),
+            new Random(Fixtures.SEED));
+    tasksByUser = new TasksByUser();
+    roundRobin = new DefaultRoundRobin();
+
+    // One user in ten gets twice the share of the others
+    Map<String, Double> weights = new HashMap<String, Double>();
+    for (int user = 0; user < users; user += 10) weights.put("user-" + user + "@saps", 2.0);
+    weightedFairShare = new WeightedFairShareSelector(weights, TimeUnit.DAYS.toMillis(1));
+  }
+
+  @Benchmark
+  public Map<String, List<SapsImage>> groupByUser() {
+    return tasksByUser.group(readyTasks, slots);
+  }
+
+  @Benchmark
+  public List<SapsImage> groupAndSelectRoundRobin() {
+    return roundRobin.select(slots, tasksByUser.group(readyTasks, slots));
+  }
+
+  @Benchmark
+  public List<SapsImage> groupAndSelectWeightedFairShare() {
+    long agedBefore = System.currentTimeMillis() - weightedFairShare.getAgingMillis();
+    return weightedFairShare.select(slots, tasksByUser.group(readyTasks, slots, agedBefore));
+  }
+}
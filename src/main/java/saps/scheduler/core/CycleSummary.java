@@ -0,0 +1,44 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts what happened to the tasks in a single run of a pipeline, to be logged as a single line at
+ * the end of the run instead of a line for each task. Must be used by a single thread.
+ */
+class CycleSummary {
+
+  private final String cycle;
+  private final long start;
+  private final Map<String, Integer> counts;
+
+  CycleSummary(String cycle) {
+    this.cycle = cycle;
+    this.start = System.nanoTime();
+    this.counts = new LinkedHashMap<String, Integer>();
+  }
+
+  void add(String outcome) {
+    Integer count = counts.get(outcome);
+    counts.put(outcome, count == null ? 1 : count + 1);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder summary = new StringBuilder(cycle).append(':');
+
+    if (counts.isEmpty()) summary.append(" nothing to do");
+    for (Map.Entry<String, Integer> count : counts.entrySet())
+      summary.append(' ').append(count.getValue()).append(' ').append(count.getKey()).append(',');
+    if (!counts.isEmpty()) summary.setLength(summary.length() - 1);
+
+    return summary
+        .append(" in ")
+        .append(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+        .append(" ms")
+        .toString();
+  }
+}
@@ -1,6 +1,11 @@
 package saps.scheduler.core;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.apache.commons.dbcp2.BasicDataSource;
 import org.apache.log4j.Logger;
 
 import saps.catalog.core.Catalog;
@@ -16,11 +21,32 @@ import saps.common.utils.ExecutionScriptTagUtil;
 import saps.common.utils.SapsPropertiesConstants;
 import saps.common.utils.SapsPropertiesUtil;
 import saps.scheduler.core.arrebol.Arrebol;
+import saps.scheduler.core.arrebol.ArrebolDispatcher;
 import saps.scheduler.core.arrebol.ArrebolUtils;
 import saps.scheduler.core.arrebol.DefaultArrebol;
+import saps.scheduler.core.arrebol.JobResponseCache;
+import saps.scheduler.core.arrebol.JobStatus;
 import saps.scheduler.core.arrebol.JobSubmitted;
+import saps.scheduler.core.arrebol.exceptions.ArrebolUnavailableException;
+import saps.scheduler.core.arrebol.exceptions.GetJobException;
+import saps.scheduler.core.arrebol.http.HttpWrapper;
+import saps.scheduler.core.catalog.CatalogDataSource;
+import saps.scheduler.core.catalog.CatalogTaskSelectionQuery;
+import saps.scheduler.core.catalog.JDBCTaskSelectionQuery;
+import saps.scheduler.core.catalog.CatalogTaskWriter;
+import saps.scheduler.core.catalog.JDBCTaskWriter;
+import saps.scheduler.core.catalog.TaskSelectionQuery;
+import saps.scheduler.core.catalog.TaskWriteBatch;
+import saps.scheduler.core.catalog.TaskWriter;
+import saps.scheduler.core.journal.JournalEntry;
+import saps.scheduler.core.journal.MapDBSubmissionJournal;
+import saps.scheduler.core.journal.NoOpSubmissionJournal;
+import saps.scheduler.core.journal.SubmissionJournal;
+import saps.scheduler.core.metrics.SchedulerMetrics;
 import saps.scheduler.core.selector.DefaultRoundRobin;
 import saps.scheduler.core.selector.Selector;
+import saps.scheduler.core.selector.TasksByUser;
+import saps.scheduler.core.selector.WeightedFairShareSelector;
 import saps.scheduler.interfaces.Scheduler;
 
 
@@ -32,85 +58,353 @@ public class DefaultScheduler implements Scheduler {
   public static final String REQUIREMENTS_CPU_REQUEST = "CPUUsage";
   public static final String REQUIREMENTS_RAM_REQUEST = "RAMUsage";
 
+  private static final int DEFAULT_CHECKER_POOL_SIZE = 8;
+  private static final int DEFAULT_ARREBOL_STATUS_BATCH_SIZE = 50;
+  private static final int DEFAULT_JOURNAL_COMPACTION_FACTOR = 4;
+  private static final int DEFAULT_SUBMITTER_POOL_SIZE = 4;
+  private static final long DEFAULT_MIN_POLL_INTERVAL_SECONDS = 0;
+  private static final long DEFAULT_MAX_POLL_INTERVAL_SECONDS = 1800;
+
+  private static final List<ImageTaskState> SCHEDULABLE_STATES =
+      Collections.unmodifiableList(
+          Arrays.asList(ImageTaskState.READY, ImageTaskState.DOWNLOADED, ImageTaskState.CREATED));
+
+  private static final String ROUND_ROBIN_SELECTOR = "round_robin";
+  private static final String WEIGHTED_FAIR_SHARE_SELECTOR = "weighted_fair_share";
+
   private Selector selector;
 
   private Catalog catalog;
+  private TaskSelectionQuery taskSelectionQuery;
+  private TaskWriter taskWriter;
   private Arrebol arrebol;
+  private JobStatusPoller poller;
+  private JobPollSchedule pollSchedule;
+  private SubmissionPipeline submissionPipeline;
+  private SubmissionJournal journal;
+  private final Map<ImageTaskState, TasksByUser> tasksByUserByState =
+      new EnumMap<ImageTaskState, TasksByUser>(ImageTaskState.class);
+  private ExecutionScriptTagRegistry executionScriptTags;
+  private TaskStateMachine stateMachine;
 
   public DefaultScheduler(Properties properties) throws IllegalArgumentException {
+    this(properties, CatalogDataSource.create(properties));
+  }
+
+  // The Catalog and the batched queries and writes share a single connection pool
+  private DefaultScheduler(Properties properties, BasicDataSource catalogDataSource)
+      throws IllegalArgumentException {
+    this(properties, new JDBCCatalog(catalogDataSource), catalogDataSource);
+  }
+
+  private DefaultScheduler(Properties properties, Catalog catalog, DataSource catalogDataSource)
+      throws IllegalArgumentException {
     this(
         properties,
-        new JDBCCatalog(properties),
-        new DefaultArrebol(properties),
-        new DefaultRoundRobin());
+        catalog,
+        new JDBCTaskSelectionQuery(catalogDataSource),
+        new JDBCTaskWriter(catalogDataSource, catalog),
+        createArrebol(properties),
+        createSelector(properties));
   }
 
   public DefaultScheduler(Properties properties, Catalog catalog,
     Arrebol arrebol, Selector selector) throws IllegalArgumentException {
+    this(
+        properties,
+        catalog,
+        new CatalogTaskSelectionQuery(catalog),
+        new CatalogTaskWriter(catalog),
+        arrebol,
+        selector);
+  }
+
+  public DefaultScheduler(Properties properties, Catalog catalog,
+    TaskSelectionQuery taskSelectionQuery, TaskWriter taskWriter, Arrebol arrebol,
+    Selector selector) throws IllegalArgumentException {
     
     if (!checkProperties(properties))
       throw new IllegalArgumentException("Error on validate the file. Missing properties for start Scheduler Component.");
 
     this.catalog = catalog;
+    this.taskSelectionQuery = taskSelectionQuery;
+    this.taskWriter = taskWriter;
     this.arrebol = arrebol;
     this.selector = selector;
+    this.stateMachine = new TaskStateMachine();
+
+    ArrebolUtils.configure(properties);
+
+    int pollerPoolSize =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties, SchedulerPropertiesConstants.CHECKER_POOL_SIZE, DEFAULT_CHECKER_POOL_SIZE);
+    int maxInFlightRequests =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties, SchedulerPropertiesConstants.ARREBOL_MAX_INFLIGHT_REQUESTS, pollerPoolSize);
+    int statusBatchSize =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_STATUS_BATCH_SIZE,
+            DEFAULT_ARREBOL_STATUS_BATCH_SIZE);
+    this.poller = new JobStatusPoller(pollerPoolSize, maxInFlightRequests, statusBatchSize);
+    this.pollSchedule =
+        new JobPollSchedule(
+            TimeUnit.SECONDS.toMillis(
+                SchedulerPropertiesUtil.getLong(
+                    properties,
+                    SchedulerPropertiesConstants.CHECKER_MIN_POLL_INTERVAL,
+                    DEFAULT_MIN_POLL_INTERVAL_SECONDS)),
+            TimeUnit.SECONDS.toMillis(
+                SchedulerPropertiesUtil.getLong(
+                    properties,
+                    SchedulerPropertiesConstants.CHECKER_MAX_POLL_INTERVAL,
+                    DEFAULT_MAX_POLL_INTERVAL_SECONDS)));
+    this.journal = createJournal(properties);
+
+    int submitterPoolSize =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.SUBMITTER_POOL_SIZE,
+            DEFAULT_SUBMITTER_POOL_SIZE);
+    int submitQueueSize =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties, SchedulerPropertiesConstants.SUBMIT_QUEUE_SIZE, 2 * submitterPoolSize);
+    this.submissionPipeline = new SubmissionPipeline(submitterPoolSize, submitQueueSize);
+
+    String tagsFilePath = System.getProperty(EXECUTION_TAGS_FILE_PATH_KEY);
+    if (tagsFilePath != null)
+      this.executionScriptTags = new ExecutionScriptTagRegistry(tagsFilePath);
+  }
+
+  /** @return number of jobs submitted to Arrebol and not finished yet */
+  public int countJobsInFlight() {
+    return arrebol.countJobsSubmitted();
+  }
+
+  /**
+   * This function releases the resources held by the scheduler: the poller and submitter threads,
+   * the journal, the execution script tags registry and the connections to Arrebol. It must be
+   * called after the scheduler pipelines are stopped.
+   */
+  public void close() {
+    poller.shutdown();
+    submissionPipeline.shutdown();
+    journal.close();
+    arrebol.close();
+
+    if (executionScriptTags != null) {
+      try {
+        executionScriptTags.close();
+      } catch (IOException e) {
+        LOGGER.warn("Error while closing execution script tags registry", e);
+      }
+    }
+  }
+
+  private static Arrebol createArrebol(Properties properties) {
+    if (properties.getProperty(SchedulerPropertiesConstants.ARREBOL_ENDPOINTS) == null)
+      return new DefaultArrebol(properties);
+
+    return ArrebolDispatcher.create(properties, new HttpWrapper(properties));
+  }
+
+  private static Selector createSelector(Properties properties) {
+    String selector =
+        properties.getProperty(SchedulerPropertiesConstants.SELECTOR, ROUND_ROBIN_SELECTOR).trim();
+
+    if (selector.equals(ROUND_ROBIN_SELECTOR)) return new DefaultRoundRobin();
+    if (selector.equals(WEIGHTED_FAIR_SHARE_SELECTOR))
+      return new WeightedFairShareSelector(properties);
+
+    throw new IllegalArgumentException(
+        "Property ["
+            + SchedulerPropertiesConstants.SELECTOR
+            + "] must be "
+            + ROUND_ROBIN_SELECTOR
+            + " or "
+            + WEIGHTED_FAIR_SHARE_SELECTOR
+            + ", but was ["
+            + selector
+            + "]");
+  }
+
+  private static SubmissionJournal createJournal(Properties properties) {
+    String journalPath = properties.getProperty(SchedulerPropertiesConstants.JOURNAL_PATH);
+
+    if (journalPath == null || journalPath.trim().isEmpty()) {
+      LOGGER.info("No submission journal configured, recovery will rely on Catalog and Arrebol");
+      return new NoOpSubmissionJournal();
+    }
+
+    int compactionFactor =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.JOURNAL_COMPACTION_FACTOR,
+            DEFAULT_JOURNAL_COMPACTION_FACTOR);
+    return new MapDBSubmissionJournal(new File(journalPath.trim()), compactionFactor);
   }
 
   private static boolean checkProperties(Properties properties) {
+    String arrebolProperty =
+        properties.getProperty(SchedulerPropertiesConstants.ARREBOL_ENDPOINTS) == null
+            ? SapsPropertiesConstants.ARREBOL_BASE_URL
+            : SchedulerPropertiesConstants.ARREBOL_ENDPOINTS;
     String[] propertiesSet = {
       SapsPropertiesConstants.IMAGE_DATASTORE_IP,
       SapsPropertiesConstants.IMAGE_DATASTORE_PORT,
-      SapsPropertiesConstants.ARREBOL_BASE_URL
+      arrebolProperty
     };
 
     return SapsPropertiesUtil.checkProperties(properties, propertiesSet);
   }
 
-   
+
+  /**
+   * Pending submissions are first replayed from the local journal, so tasks whose Arrebol job id
+   * never reached the Catalog are recovered without asking Arrebol for them. Only the tasks the
+   * journal does not know are looked up in Arrebol by name.
+   */
   public void recovery() {
+    CycleSummary summary = new CycleSummary("Recovery");
+    TaskWriteBatch writes = taskWriter.newBatch();
+    Map<String, JournalEntry> journaledSubmissions = journal.replay();
     List<SapsImage> tasksInProcessingState = getProcessingTasksInCatalog();
     List<SapsImage> tasksForPopulateSubmittedJobList = new ArrayList<>();
+    Set<String> tasksInProcessing = new HashSet<>();
 
-      for (SapsImage task : tasksInProcessingState) {
-        if (task.getArrebolJobId().equals(SapsImage.NONE_ARREBOL_JOB_ID)) {
-        
-          String jobName = task.getState().getValue() + "-" + task.getTaskId();
-          LOGGER.info("--- Starting getJobByName In Arrebol ---");
-          List<JobResponseDTO> jobsWithEqualJobName = getJobByNameInArrebol(jobName, "gets job by name [" + jobName + "]");
-          LOGGER.info("Returned list: " + jobsWithEqualJobName);
-
-          if (jobsWithEqualJobName.isEmpty()) {
-            rollBackTaskState(task);
-          }
+    for (SapsImage task : tasksInProcessingState) {
+      tasksInProcessing.add(task.getTaskId());
 
-        else {
-          String arrebolJobId = jobsWithEqualJobName.get(0).getId();
-          updateStateInCatalog(
-              task,
-              task.getState(),
-              SapsImage.AVAILABLE,
-              SapsImage.NON_EXISTENT_DATA,
-              arrebolJobId,
-              "updates task [" + task.getTaskId() + "] with Arrebol job ID [" + arrebolJobId + "]");
-          tasksForPopulateSubmittedJobList.add(task);
-        } 
-      }
-      else {
+      if (task.getArrebolJobId().equals(SapsImage.NONE_ARREBOL_JOB_ID)) {
+        recoverJobId(
+            task,
+            journaledSubmissions.get(task.getTaskId()),
+            writes,
+            summary,
+            tasksForPopulateSubmittedJobList);
+      } else {
+        summary.add("still submitted");
         String arrebolJobId = task.getArrebolJobId();
+        if (!journaledSubmissions.containsKey(task.getTaskId()))
+          journal.recordSubmitted(task.getTaskId(), task.getState(), arrebolJobId);
         arrebol.addJobInList(new JobSubmitted(arrebolJobId, task));
       }
-    };
+    }
+
+    for (String taskId : journaledSubmissions.keySet()) {
+      if (!tasksInProcessing.contains(taskId)) journal.recordCompleted(taskId);
+    }
+
+    flushCatalogWrites(writes);
+    arrebol.populateJobList(tasksForPopulateSubmittedJobList);
+    LOGGER.info(summary);
+  }
+
+  /**
+   * This function reconciles, while the scheduler runs, the tasks left in a processing state
+   * without an Arrebol job id, as the recovery does at startup: their job id is recovered from the
+   * journal or from Arrebol, or they are rolled back. It must not run during a submission cycle,
+   * whose tasks have no job id until their submission completes.
+   */
+  public void reconcile() {
+    if (!ArrebolUtils.isAvailable()) {
+      LOGGER.warn("Arrebol is unavailable, skipping reconciliation");
+      return;
+    }
+
+    CycleSummary summary = new CycleSummary("Reconciliation");
+    TaskWriteBatch writes = taskWriter.newBatch();
+    List<SapsImage> tasksForPopulateSubmittedJobList = new ArrayList<>();
+    Map<String, JournalEntry> journaledSubmissions = null;
+
+    for (SapsImage task : getProcessingTasksInCatalog()) {
+      if (!task.getArrebolJobId().equals(SapsImage.NONE_ARREBOL_JOB_ID)) continue;
+
+      if (journaledSubmissions == null) journaledSubmissions = journal.replay();
+      recoverJobId(
+          task,
+          journaledSubmissions.get(task.getTaskId()),
+          writes,
+          summary,
+          tasksForPopulateSubmittedJobList);
+    }
+
+    flushCatalogWrites(writes);
     arrebol.populateJobList(tasksForPopulateSubmittedJobList);
+    LOGGER.info(summary);
   }
 
-/**
+  /**
+   * This function recovers the Arrebol job id of a task in a processing state, first from the
+   * journal and then by its job name in Arrebol, or rolls the task back when its job is not found.
+   *
+   * @param task task without Arrebol job id
+   * @param journaled journal entry of the task, or null if there is none
+   * @param recoveredTasks tasks whose job id was recovered, to be listed as submitted
+   */
+  private void recoverJobId(
+      SapsImage task,
+      JournalEntry journaled,
+      TaskWriteBatch writes,
+      CycleSummary summary,
+      List<SapsImage> recoveredTasks) {
+    String arrebolJobId = getJournaledJobId(task, journaled);
+    if (arrebolJobId == null) {
+      arrebolJobId = getJobIdByName(task);
+      if (arrebolJobId != null) summary.add("recovered from Arrebol");
+    } else {
+      summary.add("recovered from journal");
+    }
+
+    if (arrebolJobId == null) {
+      summary.add("rolled back");
+      rollBackTaskState(writes, task, 0);
+      journal.recordCompleted(task.getTaskId());
+    } else {
+      updateStateInCatalog(
+          writes,
+          task,
+          task.getState(),
+          SapsImage.AVAILABLE,
+          SapsImage.NON_EXISTENT_DATA,
+          arrebolJobId,
+          "updates task [" + task.getTaskId() + "] with Arrebol job ID [" + arrebolJobId + "]");
+      journal.recordSubmitted(task.getTaskId(), task.getState(), arrebolJobId);
+      recoveredTasks.add(task);
+    }
+  }
+
+  private String getJournaledJobId(SapsImage task, JournalEntry journaled) {
+    if (journaled == null || journaled.getJobId() == null || journaled.getPhase() != task.getState())
+      return null;
+
+    LOGGER.debug("Recovered Arrebol job ID of task [" + task.getTaskId() + "] from journal");
+    return journaled.getJobId();
+  }
+
+  private String getJobIdByName(SapsImage task) {
+    String jobName = task.getState().getValue() + "-" + task.getTaskId();
+    LOGGER.info("--- Starting getJobByName In Arrebol ---");
+    List<JobResponseDTO> jobsWithEqualJobName =
+        getJobByNameInArrebol(jobName, "gets job by name [" + jobName + "]");
+    LOGGER.info("Returned list: " + jobsWithEqualJobName);
+
+    if (jobsWithEqualJobName.isEmpty()) return null;
+    return jobsWithEqualJobName.get(0).getId();
+  }
+
+  /**
    * This function apply rollback in task state and updates in Catalog
    *
    * @param task task to be apply rollback
+   * @param enteredAt time the task entered its current state, or 0 if not known
    */
-  private void rollBackTaskState(SapsImage task) {
-    ImageTaskState previousState = getPreviousState(task.getState());
+  private void rollBackTaskState(TaskWriteBatch writes, SapsImage task, long enteredAt) {
+    SchedulerMetrics.ROLLBACKS.inc();
+    ImageTaskState previousState =
+        stateMachine.transition(task.getState(), TaskStateMachine.Event.ROLL_BACK, enteredAt);
     updateStateInCatalog(
+        writes,
         task,
         previousState,
         SapsImage.AVAILABLE,
@@ -124,20 +418,57 @@ public class DefaultScheduler implements Scheduler {
   }
 
    public void schedule() {
-    List<SapsImage> selectedTasks = selectTasks();
+    if (!ArrebolUtils.isAvailable()) {
+      LOGGER.warn("Arrebol is unavailable, skipping submission cycle");
+      return;
+    }
+
+    List<SapsImage> selectedTasks;
+    try {
+      selectedTasks = selectTasks();
+    } catch (ArrebolUnavailableException e) {
+      LOGGER.warn("Arrebol is unavailable, skipping submission cycle", e);
+      return;
+    }
+
     submitTasks(selectedTasks);
   }
 
+  /**
+   * Tasks in every schedulable state are fetched in a single query, already cut to the first count
+   * tasks of each user in each state. The slots are then given to the states in order of
+   * precedence (READY, DOWNLOADED, CREATED), the selector sharing the slots left for each state
+   * among its users.
+   *
+   * <p>The precedence is kept on purpose rather than merging the states with a single comparator:
+   * a task further along the pipeline must go first whatever its user or priority, and the
+   * selectors keep their shares for each state, so they must be given one state at a time.
+   */
   protected List<SapsImage> selectTasks() {
     List<SapsImage> selectedTasks = new LinkedList<SapsImage>();
-    ImageTaskState[] states = {
-      ImageTaskState.READY, ImageTaskState.DOWNLOADED, ImageTaskState.CREATED
-    };
 
-    int countUpToTasks = getCountSlotsInArrebol("default");
+    int countUpToTasks = getCountSlotsInArrebol();
+    SchedulerMetrics.FREE_SLOTS.set(countUpToTasks);
+
+    if (countUpToTasks <= 0) {
+      LOGGER.info(
+          "There will be no selection of tasks because there is no capacity for new jobs in Arrebol");
+      return selectedTasks;
+    }
 
-    for (ImageTaskState state : states) {
-      List<SapsImage> selectedTasksInCurrentState = selectTasks(countUpToTasks, state);
+    LOGGER.info("Trying select up to " + countUpToTasks + " tasks in states " + SCHEDULABLE_STATES);
+
+    Map<ImageTaskState, List<SapsImage>> tasksByState =
+        new EnumMap<ImageTaskState, List<SapsImage>>(ImageTaskState.class);
+    for (ImageTaskState state : SCHEDULABLE_STATES)
+      tasksByState.put(state, new ArrayList<SapsImage>());
+    long agedBefore = getAgedBefore();
+    for (SapsImage task : getSelectableTasksInCatalog(countUpToTasks, agedBefore))
+      tasksByState.get(task.getState()).add(task);
+
+    for (ImageTaskState state : SCHEDULABLE_STATES) {
+      List<SapsImage> selectedTasksInCurrentState =
+          selectTasks(countUpToTasks, state, tasksByState.get(state), agedBefore);
       selectedTasks.addAll(selectedTasksInCurrentState);
       countUpToTasks -= selectedTasksInCurrentState.size();
     }
@@ -145,7 +476,19 @@ public class DefaultScheduler implements Scheduler {
     return selectedTasks;
   }
 
-  private List<SapsImage> selectTasks(int count, final ImageTaskState state) {
+  /**
+   * Tasks that age in the selector must come first when the tasks of each user are cut, otherwise
+   * the aged tasks could be cut before the selector sees them.
+   *
+   * @return aging limit of the selector in milliseconds since the epoch, or 0 if tasks do not age
+   */
+  private long getAgedBefore() {
+    long agingMillis = selector.getAgingMillis();
+    return agingMillis > 0 ? System.currentTimeMillis() - agingMillis : 0;
+  }
+
+  private List<SapsImage> selectTasks(
+      int count, ImageTaskState state, List<SapsImage> tasks, long agedBefore) {
     List<SapsImage> selectedTasks = new LinkedList<SapsImage>();
 
     if (count <= 0) {
@@ -156,90 +499,161 @@ public class DefaultScheduler implements Scheduler {
       return selectedTasks;
     }
 
-    LOGGER.info("Trying select up to " + count + " tasks in state " + state);
-
-    List<SapsImage> tasks =
-        getTasksInCatalog(state, "gets tasks with " + state.getValue() + " state");
-
-    Map<String, List<SapsImage>> tasksByUsers = mapUsers2Tasks(tasks);
+    Map<String, List<SapsImage>> tasksByUsers = mapUsers2Tasks(state, tasks, count, agedBefore);
 
     selectedTasks = selector.select(count, tasksByUsers);
 
-    LOGGER.info("Number of selected tasks using " + selector.version() + ": " + selectedTasks.size());
+    LOGGER.info(
+        "Number of selected tasks in state "
+            + state.getValue()
+            + " using "
+            + selector.version()
+            + ": "
+            + selectedTasks.size());
     return selectedTasks;
   }
 
   public void submitTasks(List<SapsImage> selectedTasks) {
-    for (SapsImage task : selectedTasks) {
-      ImageTaskState nextState = getNextState(task.getState());
+    final CycleSummary summary = new CycleSummary("Submission cycle");
+    final TaskWriteBatch writes = taskWriter.newBatch();
+    final List<JobSubmitted> submittedJobs = new ArrayList<JobSubmitted>();
+
+    submissionPipeline.run(
+        selectedTasks,
+        new SubmissionPipeline.Stages() {
+          @Override
+          public ImageTaskState prepare(SapsImage task) {
+            ImageTaskState nextState =
+                stateMachine.transition(
+                    task.getState(), TaskStateMachine.Event.SUBMIT, getUpdateTime(task));
+
+            updateStateInCatalog(
+                writes,
+                task,
+                nextState,
+                SapsImage.AVAILABLE,
+                SapsImage.NON_EXISTENT_DATA,
+                SapsImage.NONE_ARREBOL_JOB_ID,
+                "updates task [" + task.getTaskId() + "] state for " + nextState.getValue());
+            journal.recordIntent(task.getTaskId(), nextState);
+
+            return nextState;
+          }
 
-      updateStateInCatalog(
-          task,
-          nextState,
-          SapsImage.AVAILABLE,
-          SapsImage.NON_EXISTENT_DATA,
-          SapsImage.NONE_ARREBOL_JOB_ID,
-          "updates task [" + task.getTaskId() + "] state for " + nextState.getValue());
-      try {
-        String arrebolJobId = submitTaskToArrebol(task, nextState);
-        updateStateInCatalog(
-            task,
-            task.getState(),
-            SapsImage.AVAILABLE,
-            SapsImage.NON_EXISTENT_DATA,
-            arrebolJobId,
-            "updates task [" + task.getTaskId() + "] with Arrebol job ID [" + arrebolJobId + "]");
-        addTimestampTaskInCatalog(task, "updates task [" + task.getTaskId() + "] timestamp");
-      } catch (Exception e) {
-        updateStateInCatalog(
-            task,
-            ImageTaskState.FAILED,
-            SapsImage.AVAILABLE,
-            SapsImage.NON_EXISTENT_DATA,
-            SapsImage.NONE_ARREBOL_JOB_ID,
-            "Changed task [" + task.getTaskId() + "] state to FAILED");
-        addTimestampTaskInCatalog(task, "updates task [" + task.getTaskId() + "] timestamp");
-      }
-    }
-  }
+          @Override
+          public String submit(SapsImage task, ImageTaskState nextState) throws Exception {
+            return submitTaskToArrebol(task, nextState);
+          }
 
-  protected Map<String, List<SapsImage>> mapUsers2Tasks(List<SapsImage> tasks) {
-    Map<String, List<SapsImage>> mapUsersToTasks = new TreeMap<String, List<SapsImage>>();
+          @Override
+          public void complete(SapsImage task, String arrebolJobId) {
+            submittedJobs.add(new JobSubmitted(arrebolJobId, task));
+            SchedulerMetrics.SUBMISSIONS.inc();
+            summary.add("submitted");
+            updateStateInCatalog(
+                writes,
+                task,
+                task.getState(),
+                SapsImage.AVAILABLE,
+                SapsImage.NON_EXISTENT_DATA,
+                arrebolJobId,
+                "updates task ["
+                    + task.getTaskId()
+                    + "] with Arrebol job ID ["
+                    + arrebolJobId
+                    + "]");
+            addTimestampTaskInCatalog(
+                writes, task, "updates task [" + task.getTaskId() + "] timestamp");
+          }
 
-    for (SapsImage task : tasks) {
-      String user = task.getUser();
-      if (!mapUsersToTasks.containsKey(user)) mapUsersToTasks.put(user, new ArrayList<SapsImage>());
+          @Override
+          public void fail(SapsImage task, Exception e) {
+            if (e instanceof ArrebolUnavailableException) {
+              LOGGER.warn(
+                  "Arrebol is unavailable, task ["
+                      + task.getTaskId()
+                      + "] goes back to be submitted in a later cycle");
+              summary.add("rolled back");
+              rollBackTaskState(writes, task, 0);
+              journal.recordCompleted(task.getTaskId());
+              return;
+            }
+
+            SchedulerMetrics.SUBMISSION_FAILURES.inc();
+            summary.add("failed");
+            updateStateInCatalog(
+                writes,
+                task,
+                stateMachine.transition(task.getState(), TaskStateMachine.Event.FAIL, 0),
+                SapsImage.AVAILABLE,
+                SapsImage.NON_EXISTENT_DATA,
+                SapsImage.NONE_ARREBOL_JOB_ID,
+                "Changed task [" + task.getTaskId() + "] state to FAILED");
+            addTimestampTaskInCatalog(
+                writes, task, "updates task [" + task.getTaskId() + "] timestamp");
+            journal.recordCompleted(task.getTaskId());
+          }
 
-      mapUsersToTasks.get(user).add(task);
-    }
+          @Override
+          public void cancel(SapsImage task) {
+            // Whether or not its prepared state reached the Catalog, the task goes back to the
+            // state it was selected in; the rollback is written with the next flush.
+            summary.add("rolled back");
+            rollBackTaskState(writes, task, 0);
+            journal.recordCompleted(task.getTaskId());
+          }
+
+          @Override
+          public void flush() {
+            // Jobs are listed only once their submission is written, so neither the checker nor a
+            // notification can handle a job, or touch its task, before that. They are listed even
+            // if the writes fail, not to be left unchecked.
+            try {
+              flushCatalogWrites(writes);
+            } finally {
+              for (JobSubmitted job : submittedJobs) arrebol.addJobInList(job);
+              submittedJobs.clear();
+            }
+          }
+        });
 
-    for (Map.Entry<String, List<SapsImage>> entry : mapUsersToTasks.entrySet()) {
-      entry.getValue().sort(
-              new Comparator<SapsImage>() {
-                @Override
-                public int compare(SapsImage task01, SapsImage task02) {
-                  int priorityCompare = task02.getPriority() - task01.getPriority();
-                  if (priorityCompare != 0) return priorityCompare;
-                  else return task02.getCreationTime().compareTo(task01.getCreationTime());
-                }
-              });
+    LOGGER.info(summary);
+  }
+
+  /**
+   * This function groups the tasks by user, sorted in the scheduling order. Since no user can get
+   * more than count tasks, only the first count tasks of each user are kept.
+   *
+   * @param state state of the tasks, each state reuses its own grouping buffers
+   * @param tasks tasks to be grouped
+   * @param count slots number in Arrebol
+   * @param agedBefore aging limit in milliseconds since the epoch, or 0 if tasks do not age
+   * @return tasks of each user, valid until the next grouping in the same state
+   */
+  protected Map<String, List<SapsImage>> mapUsers2Tasks(
+      ImageTaskState state, List<SapsImage> tasks, int count, long agedBefore) {
+    TasksByUser grouping = tasksByUserByState.get(state);
+    if (grouping == null) {
+      grouping = new TasksByUser();
+      tasksByUserByState.put(state, grouping);
     }
 
-    return mapUsersToTasks;
+    return grouping.group(tasks, count, agedBefore);
   }
 
   private String submitTaskToArrebol(SapsImage task, ImageTaskState state) throws Exception {
-  LOGGER.info(
+  LOGGER.debug(
       "Trying submit task id ["
           + task.getTaskId()
           + "] in state "
           + task.getState().getValue()
           + " to arrebol");
 
-  String repository = getRepository(state);
-  ExecutionScriptTag scriptInfo = getExecutionScriptTag(task, repository);
+  TaskStateMachine.Phase phase = TaskStateMachine.getPhase(state);
+  String repository = phase.getRepository();
+  ExecutionScriptTag scriptInfo = getExecutionScriptTag(task, phase);
 
-  String formatImageWithDigest = getFormatImageWithDigest(scriptInfo, state, task);
+  String formatImageWithDigest = scriptInfo.getDockerRepository() + "@" + phase.getDigest(task);
   String memoryUsage = scriptInfo.getMemoryUsage();
   String cpuUsage = scriptInfo.getCpuUsage();
 
@@ -255,39 +669,127 @@ public class DefaultScheduler implements Scheduler {
   SapsTask sapsTask =
       new SapsTask(
           task.getTaskId() + "#" + formatImageWithDigest, requirements, commands, metadata);
-  LOGGER.info("SAPS task: " + sapsTask.toJSON().toString());
+  if (LOGGER.isDebugEnabled()) LOGGER.debug("SAPS task: " + sapsTask.toJSON().toString());
 
   List<SapsTask> tasks = new LinkedList<SapsTask>();
   tasks.add(sapsTask);
 
   SapsJob imageJob = new SapsJob(task.getTaskId(), tasks);
-  LOGGER.info("SAPS job: " + imageJob.toJSON().toString());
+  if (LOGGER.isDebugEnabled()) LOGGER.debug("SAPS job: " + imageJob.toJSON().toString());
 
   String jobId = submitJobInArrebol(imageJob, "add new job");
   LOGGER.debug("Result submited job: " + jobId);
-
-  arrebol.addJobInList(new JobSubmitted(jobId, task));
-  LOGGER.info("Adding job in list");
+  journal.recordSubmitted(task.getTaskId(), state, jobId);
 
   return jobId;
 }
 
   public void checker() {
+  if (!ArrebolUtils.isAvailable()) {
+    LOGGER.warn("Arrebol is unavailable, skipping checker sweep");
+    return;
+  }
+
   List<JobSubmitted> submittedJobs = arrebol.returnAllJobsSubmitted();
-  List<JobSubmitted> finishedJobs = new LinkedList<JobSubmitted>();
+  List<JobSubmitted> dueJobs = pollSchedule.takeDueJobs(submittedJobs);
+
+  LOGGER.debug("Checking " + dueJobs.size() + " submitted jobs for Arrebol service");
+  if (LOGGER.isDebugEnabled()) LOGGER.debug("Submmitteds jobs list: " + dueJobs.toString());
+
+  final CycleSummary summary = new CycleSummary("Checker sweep");
+  final JobResponseCache responses = new JobResponseCache(arrebol);
+  final TaskWriteBatch writes = taskWriter.newBatch();
+
+  poller.poll(
+      dueJobs,
+      responses,
+      new JobStatusPoller.Listener() {
+        @Override
+        public void onJobStatus(JobSubmitted job, JobStatus jobResponse) {
+          if (checkJob(job, jobResponse, writes, summary))
+            journal.recordCompleted(job.getImageTask().getTaskId());
+          else if (arrebol.getJobSubmitted(job.getJobId()) != null) pollSchedule.schedule(job);
+        }
+      });
+  flushCatalogWrites(writes);
+
+  // Jobs whose lookup failed are still submitted but were not scheduled again
+  for (JobSubmitted job : dueJobs) {
+    if (!pollSchedule.isScheduled(job) && arrebol.getJobSubmitted(job.getJobId()) != null)
+      pollSchedule.retry(job);
+  }
+
+  LOGGER.info(
+      summary
+          + ", "
+          + (submittedJobs.size() - dueJobs.size())
+          + " jobs not due to be checked, "
+          + responses.getRemoteCalls()
+          + " requests to Arrebol");
+  }
+
+  /**
+   * This function checks a job whose state change was notified, as the checker does for the jobs
+   * it polls. The notification is only taken as a hint: the job is looked up again in Arrebol and
+   * its transition applied from that response. Notifications of jobs not in the submitted job list
+   * (already handled, not submitted by this scheduler, or not listed yet), or of jobs that cannot
+   * be looked up now, are ignored and left to the checker.
+   *
+   * @param jobId id of the job notified
+   * @return true if the job is finished and its state transition was applied
+   */
+  public boolean applyJobNotification(String jobId) {
+    JobSubmitted job = arrebol.getJobSubmitted(jobId);
+    if (job == null) {
+      LOGGER.debug("Ignoring notification of job [" + jobId + "] not submitted");
+      return false;
+    }
+
+    JobStatus jobResponse = null;
+    try {
+      for (JobStatus status : arrebol.checkStatusJobsById(Collections.singletonList(jobId)))
+        if (jobId.equals(status.getId())) jobResponse = status;
+    } catch (GetJobException | ArrebolUnavailableException e) {
+      LOGGER.warn(
+          "Could not look up notified job [" + jobId + "], leaving it to the checker: "
+              + e.getMessage());
+      return false;
+    }
+
+    CycleSummary summary = new CycleSummary("Job [" + job.getJobId() + "] notification");
+    TaskWriteBatch writes = taskWriter.newBatch();
+
+    boolean finished = checkJob(job, jobResponse, writes, summary);
+    if (finished) {
+      flushCatalogWrites(writes);
+      journal.recordCompleted(job.getImageTask().getTaskId());
+    }
 
-  LOGGER.info("Checking " + submittedJobs.size() + " submitted jobs for Arrebol service");
-  LOGGER.info("Submmitteds jobs list: " + submittedJobs.toString());
+    LOGGER.debug(summary);
+    return finished;
+  }
 
-  for (JobSubmitted job : submittedJobs) {
-    System.out.println(job);
+  /**
+   * This function applies the state transition of a submitted job according to its information in
+   * Arrebol. A finished (or lost) job is claimed first, by removing it from the submitted job list,
+   * so its transition is applied once even if the checker and a notification see it together.
+   *
+   * @param job submitted job
+   * @param jobResponse job information returned from Arrebol, or null if the job was not found
+   * @param writes Catalog writes of the current sweep
+   * @param summary summary of the current sweep
+   * @return true if the job is finished (or lost) and was claimed by this call
+   */
+  private boolean checkJob(
+      JobSubmitted job, JobStatus jobResponse, TaskWriteBatch writes, CycleSummary summary) {
     String jobId = job.getJobId();
     SapsImage task = job.getImageTask();
 
-    JobResponseDTO jobResponse = getJobByIdInArrebol(jobId, "gets job by ID [" + jobId + "]");
     LOGGER.debug("Job [" + jobId + "] information returned from Arrebol: " + jobResponse);
 
-    if (!wasJobFound(jobResponse)) {
+    if (jobResponse == null) {
+        if (!claimJob(job, summary)) return false;
+
         LOGGER.info(
             "Job ["
                 + jobId
@@ -295,25 +797,27 @@ public class DefaultScheduler implements Scheduler {
                 + task.getTaskId()
                 + "]");
 
-        rollBackTaskState(task);
-        finishedJobs.add(job);
-        continue;
+        summary.add("lost");
+        rollBackTaskState(writes, task, job.getSubmittedAt());
+        return true;
       }
 
     if (checkJobWasFinish(jobResponse)) {
+      if (!claimJob(job, summary)) return false;
 
       if (checkJobFinishedWithSucess(jobResponse)) {
-        LOGGER.info("Job [" + jobId + "] has been finished with success");
-        LOGGER.info("Current state of task: " + task.getState());
-
-        ImageTaskState nextState = getNextState(task.getState());
+        LOGGER.debug("Job [" + jobId + "] has been finished with success");
+        LOGGER.debug("Current state of task: " + task.getState());
+        summary.add("finished");
+        pollSchedule.recordSuccess(job);
 
-        if (nextState == null) {
-          nextState = ImageTaskState.FINISHED;
-        } 
+        ImageTaskState nextState =
+            stateMachine.transition(
+                task.getState(), TaskStateMachine.Event.SUCCEED, job.getSubmittedAt());
 
-        LOGGER.info("Updated state of task: " + nextState);
+        LOGGER.debug("Updated state of task: " + nextState);
         updateStateInCatalog(
+            writes,
             task,
             nextState,
             SapsImage.AVAILABLE,
@@ -326,65 +830,66 @@ public class DefaultScheduler implements Scheduler {
                 + "]");
       } else {
         LOGGER.info("Job [" + jobId + "] has been finished with failure");
+        summary.add("failed");
 
         updateStateInCatalog(
+            writes,
             task,
-            ImageTaskState.FAILED,
+            stateMachine.transition(
+                task.getState(), TaskStateMachine.Event.FAIL, job.getSubmittedAt()),
             SapsImage.AVAILABLE,
             "error while execute " + task.getState().getValue() + " phase",
             SapsImage.NONE_ARREBOL_JOB_ID,
             "updates task [" + task.getTaskId() + "] with failed state");
       }
 
-      addTimestampTaskInCatalog(task, "updates task [" + task.getTaskId() + "] timestamp");
+      addTimestampTaskInCatalog(writes, task, "updates task [" + task.getTaskId() + "] timestamp");
 
-      finishedJobs.add(job);
-    } else LOGGER.info("Job [" + jobId + "] has NOT been finished");
-  }
-
-    for (JobSubmitted jobFinished : finishedJobs) {
-      LOGGER.info("Removing job [" + jobFinished.getJobId() + "] from the submitted job list");
-      arrebol.removeJob(jobFinished);
+      return true;
     }
-  }
 
-  private boolean wasJobFound(JobResponseDTO jobResponse) {
-    JobResponseDTO jobResponseDTO = ArrebolUtils.getJobById(arrebol, jobResponse.getId(), "Searching for job in arrebol");
+    LOGGER.debug("Job [" + jobId + "] has NOT been finished");
+    summary.add("running");
+    return false;
+  }
 
-    if (jobResponseDTO != null) {
+  private boolean claimJob(JobSubmitted job, CycleSummary summary) {
+    if (arrebol.removeJob(job)) {
+      pollSchedule.forget(job);
       return true;
     }
 
+    LOGGER.debug("Job [" + job.getJobId() + "] was already handled");
+    summary.add("already handled");
     return false;
   }
 
-  protected boolean updateStateInCatalog(SapsImage task, ImageTaskState state, String status,
-      String error, String arrebolJobId, String message) {
+  protected boolean updateStateInCatalog(TaskWriteBatch writes, SapsImage task,
+      ImageTaskState state, String status, String error, String arrebolJobId, String message) {
         
     task.setState(state);
     task.setStatus(status);
     task.setError(error);
     task.setArrebolJobId(arrebolJobId);
 
-    CatalogUtils.updateState(catalog, task);
+    writes.updateState(task);
     
     return true;
   }
 
-  private void addTimestampTaskInCatalog(SapsImage task, String message) {
-    CatalogUtils.addTimestampTask(catalog, task);
+  private void addTimestampTaskInCatalog(TaskWriteBatch writes, SapsImage task, String message) {
+    writes.addTimestamp(task);
   }
 
   private String submitJobInArrebol(SapsJob imageJob, String message) {
     return ArrebolUtils.submitJob(arrebol, imageJob, message);
   }
 
-  private boolean checkJobWasFinish(JobResponseDTO jobResponse) {
+  private boolean checkJobWasFinish(JobStatus jobResponse) {
     String jobId = jobResponse.getId();
     String jobState = jobResponse.getJobState().toUpperCase();
 
-    LOGGER.info("Checking if job [" + jobId + "] was finished");
-    LOGGER.info("State job [" + jobId + "]: " + jobState);
+    LOGGER.debug("State job [" + jobId + "]: " + jobState);
 
     if (jobState.compareTo(TaskResponseDTO.STATE_FAILED) != 0
         && jobState.compareTo(TaskResponseDTO.STATE_FINISHED) != 0) return false;
@@ -392,94 +897,68 @@ public class DefaultScheduler implements Scheduler {
     return true;
   }
 
-  private boolean checkJobFinishedWithSucess(JobResponseDTO jobResponse) {
+  private boolean checkJobFinishedWithSucess(JobStatus jobResponse) {
 
-    for (TaskResponseDTO task : jobResponse.getTasks()) {
-      TaskSpecResponseDTO taskSpec = task.getTaskSpec();
+    for (JobStatus.CommandStatus command : jobResponse.getCommands()) {
 
-      for (CommandResponseDTO command : taskSpec.getCommands()) {
+      String commandState = command.getState();
+      Integer commandExitCode = command.getExitCode();
 
-        String commandDesc = command.getCommand();
-        String commandState = command.getState();
-        Integer commandExitCode = command.getExitCode();
+      if (LOGGER.isDebugEnabled())
+        LOGGER.debug("Command state: " + commandState + ", exit code: " + commandExitCode);
 
-        LOGGER.info("Command: " + commandDesc);
-        LOGGER.info("State:" + commandState);
-        LOGGER.info("Exit code: " + commandExitCode);
-
-        if (commandExitCode != 0 || !commandState.equals(TaskResponseDTO.STATE_FINISHED))
-          return false;
-      }
+      if (commandExitCode == null
+          || commandExitCode != 0
+          || !TaskResponseDTO.STATE_FINISHED.equals(commandState)) return false;
     }
     return true;
   }
 
-   private ImageTaskState getNextState(ImageTaskState currentState) {
-    Map<ImageTaskState, ImageTaskState> statesMap = new HashMap<>();
-
-    statesMap.put(ImageTaskState.CREATED, ImageTaskState.DOWNLOADING);
-    statesMap.put(ImageTaskState.DOWNLOADING, ImageTaskState.DOWNLOADED);
-    statesMap.put(ImageTaskState.DOWNLOADED, ImageTaskState.PREPROCESSING);
-    statesMap.put(ImageTaskState.PREPROCESSING, ImageTaskState.READY);
-    statesMap.put(ImageTaskState.READY, ImageTaskState.RUNNING);
-    statesMap.put(ImageTaskState.RUNNING, ImageTaskState.FINISHED);
+  private ExecutionScriptTag getExecutionScriptTag(SapsImage task, TaskStateMachine.Phase phase)
+      throws Exception {
+    String tag = phase.getTag(task);
+    if (executionScriptTags != null) return executionScriptTags.get(phase.getRepository(), tag);
 
-    return statesMap.get(currentState);
+    String tagsFilePath = System.getProperty(EXECUTION_TAGS_FILE_PATH_KEY);
+    return ExecutionScriptTagUtil.getExecutionScriptTag(tagsFilePath, tag, phase.getRepository());
   }
 
-  private ImageTaskState getPreviousState(ImageTaskState currentState) {
-    HashMap<ImageTaskState, ImageTaskState> statesMap = new HashMap<>();
-
-    statesMap.put(ImageTaskState.DOWNLOADING, ImageTaskState.CREATED);
-    statesMap.put(ImageTaskState.PREPROCESSING, ImageTaskState.DOWNLOADED);
-    statesMap.put(ImageTaskState.RUNNING, ImageTaskState.READY);
-
-    return statesMap.get(currentState);
+  private static long getUpdateTime(SapsImage task) {
+    return task.getUpdateTime() == null ? 0 : task.getUpdateTime().getTime();
   }
 
-  private ExecutionScriptTag getExecutionScriptTag(SapsImage task, String repository)
-      throws Exception {
-    String tagsFilePath = System.getProperty(EXECUTION_TAGS_FILE_PATH_KEY);
-    String tag;
-    if (repository.equals(ExecutionScriptTagUtil.PROCESSING)) tag = task.getProcessingTag();
-    else if (repository.equals(ExecutionScriptTagUtil.PRE_PROCESSING)) tag = task.getPreprocessingTag();
-    else tag = task.getInputdownloadingTag();
-
-    return ExecutionScriptTagUtil.getExecutionScriptTag(tagsFilePath, tag, repository);
+  private int getCountSlotsInArrebol() {
+    return ArrebolUtils.getCountSlots(arrebol);
   }
 
-  private String getFormatImageWithDigest(
-        ExecutionScriptTag imageDockerInfo, ImageTaskState state, SapsImage task) {
-      if (state == ImageTaskState.RUNNING)
-        return imageDockerInfo.getDockerRepository() + "@" + task.getDigestProcessing();
-      else if (state == ImageTaskState.PREPROCESSING)
-        return imageDockerInfo.getDockerRepository() + "@" + task.getDigestPreprocessing();
-      else return imageDockerInfo.getDockerRepository() + "@" + task.getDigestInputdownloading();
+  private List<JobResponseDTO> getJobByNameInArrebol(String jobName, String message) {
+      return ArrebolUtils.getJobByName(arrebol, jobName, message);
     }
 
-  private String getRepository(ImageTaskState state) {
-    if (state == ImageTaskState.RUNNING) return ExecutionScriptTagUtil.PROCESSING;
-    else if (state == ImageTaskState.PREPROCESSING) return ExecutionScriptTagUtil.PRE_PROCESSING;
-    else return ExecutionScriptTagUtil.INPUT_DOWNLOADER;
-  }
-
-  private int getCountSlotsInArrebol(String queueId) {
-      return ArrebolUtils.getCountSlots(arrebol, queueId);
+  private List<SapsImage> getProcessingTasksInCatalog() {
+    long start = System.nanoTime();
+    try {
+      return CatalogUtils.getProcessingTasks(catalog, "gets tasks in processing state");
+    } finally {
+      SchedulerMetrics.CATALOG_REQUEST_DURATION.labels("get_processing_tasks").observeSince(start);
     }
-
-  private JobResponseDTO getJobByIdInArrebol(String jobId, String message) {
-    return ArrebolUtils.getJobById(arrebol, jobId, message);
   }
 
-  private List<JobResponseDTO> getJobByNameInArrebol(String jobName, String message) {
-      return ArrebolUtils.getJobByName(arrebol, jobName, message);
+  private List<SapsImage> getSelectableTasksInCatalog(int limitPerUser, long agedBefore) {
+    long start = System.nanoTime();
+    try {
+      return taskSelectionQuery.getSelectableTasks(SCHEDULABLE_STATES, limitPerUser, agedBefore);
+    } finally {
+      SchedulerMetrics.CATALOG_REQUEST_DURATION.labels("get_selectable_tasks").observeSince(start);
     }
-
-  private List<SapsImage> getTasksInCatalog(ImageTaskState state, String message) { 
-    return CatalogUtils.getTasks(catalog, state);
   }
 
-  private List<SapsImage> getProcessingTasksInCatalog() {
-    return CatalogUtils.getProcessingTasks(catalog, "gets tasks in processing state");
+  private void flushCatalogWrites(TaskWriteBatch writes) {
+    long start = System.nanoTime();
+    try {
+      writes.flush();
+    } finally {
+      SchedulerMetrics.CATALOG_REQUEST_DURATION.labels("write_tasks").observeSince(start);
+    }
   }
 }
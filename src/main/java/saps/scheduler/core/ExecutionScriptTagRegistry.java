@@ -0,0 +1,183 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import saps.common.utils.ExecutionScriptTag;
+import saps.common.utils.ExecutionScriptTagUtil;
+
+/**
+ * In-memory view of the execution script tags file. The file is parsed once into an immutable
+ * lookup by repository and tag, which is replaced as a whole when the file modification time
+ * changes, so lookups never do file I/O nor see a partially loaded file.
+ */
+public class ExecutionScriptTagRegistry implements Closeable {
+
+  private static final Logger LOGGER = Logger.getLogger(ExecutionScriptTagRegistry.class);
+
+  private static final String[] REPOSITORIES = {
+    ExecutionScriptTagUtil.INPUT_DOWNLOADER,
+    ExecutionScriptTagUtil.PRE_PROCESSING,
+    ExecutionScriptTagUtil.PROCESSING
+  };
+  private static final String TAG_NAME = "name";
+  private static final String DOCKER_TAG = "docker_tag";
+  private static final String DOCKER_REPOSITORY = "docker_repository";
+  private static final String MEMORY_USAGE = "memory_usage";
+  private static final String CPU_USAGE = "cpu_usage";
+
+  private final Path tagsFile;
+  private final WatchService watchService;
+  private volatile Snapshot snapshot;
+
+  /**
+   * @param tagsFilePath path to the execution script tags file
+   * @throws IllegalStateException if the file can not be loaded or watched
+   */
+  public ExecutionScriptTagRegistry(String tagsFilePath) {
+    this.tagsFile = Paths.get(tagsFilePath).toAbsolutePath();
+
+    try {
+      this.snapshot = load(tagsFile);
+      this.watchService = FileSystems.getDefault().newWatchService();
+      tagsFile
+          .getParent()
+          .register(
+              watchService,
+              StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY);
+    } catch (Exception e) {
+      throw new IllegalStateException(
+          "Error while loading execution script tags file " + tagsFile, e);
+    }
+
+    Thread watcher = new Thread(new Watcher(), "saps-execution-script-tags-watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+
+  /**
+   * This function gets the execution script tag from the last loaded version of the tags file.
+   *
+   * @param repository repository of the tag
+   * @param tag tag name
+   * @return execution script tag
+   * @throws IllegalArgumentException if the tag is not in the repository
+   */
+  public ExecutionScriptTag get(String repository, String tag) {
+    ExecutionScriptTag executionScriptTag = snapshot.get(repository, tag);
+
+    if (executionScriptTag == null)
+      throw new IllegalArgumentException(
+          "Tag [" + tag + "] of repository [" + repository + "] is not in " + tagsFile);
+    return executionScriptTag;
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void reloadIfModified() {
+    try {
+      FileTime lastModified = Files.getLastModifiedTime(tagsFile);
+      if (lastModified.equals(snapshot.lastModified)) return;
+
+      snapshot = load(tagsFile);
+      LOGGER.info("Execution script tags reloaded from " + tagsFile);
+    } catch (Exception e) {
+      LOGGER.error("Error while reloading execution script tags, keeping previous version", e);
+    }
+  }
+
+  private static Snapshot load(Path tagsFile) throws Exception {
+    FileTime lastModified = Files.getLastModifiedTime(tagsFile);
+    JSONObject tagsJson =
+        new JSONObject(new String(Files.readAllBytes(tagsFile), StandardCharsets.UTF_8));
+
+    Map<String, Map<String, ExecutionScriptTag>> tags =
+        new HashMap<String, Map<String, ExecutionScriptTag>>();
+    for (String repository : REPOSITORIES) {
+      Map<String, ExecutionScriptTag> repositoryTags = new HashMap<String, ExecutionScriptTag>();
+      JSONArray tagsJsonArray = tagsJson.optJSONArray(repository);
+
+      for (int i = 0; tagsJsonArray != null && i < tagsJsonArray.length(); i++) {
+        JSONObject tagJson = tagsJsonArray.getJSONObject(i);
+        String tag = tagJson.getString(TAG_NAME);
+        repositoryTags.put(
+            tag,
+            new ExecutionScriptTag(
+                tag,
+                tagJson.getString(DOCKER_REPOSITORY),
+                tagJson.getString(DOCKER_TAG),
+                repository,
+                tagJson.getString(MEMORY_USAGE),
+                tagJson.getString(CPU_USAGE)));
+      }
+
+      tags.put(repository, Collections.unmodifiableMap(repositoryTags));
+    }
+
+    return new Snapshot(lastModified, Collections.unmodifiableMap(tags));
+  }
+
+  private static class Snapshot {
+
+    private final FileTime lastModified;
+    private final Map<String, Map<String, ExecutionScriptTag>> tags;
+
+    Snapshot(FileTime lastModified, Map<String, Map<String, ExecutionScriptTag>> tags) {
+      this.lastModified = lastModified;
+      this.tags = tags;
+    }
+
+    ExecutionScriptTag get(String repository, String tag) {
+      Map<String, ExecutionScriptTag> repositoryTags = tags.get(repository);
+      return repositoryTags == null ? null : repositoryTags.get(tag);
+    }
+  }
+
+  private class Watcher implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          WatchKey key = watchService.take();
+
+          boolean changed = false;
+          for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                || tagsFile.getFileName().equals(context)) changed = true;
+          }
+
+          if (changed) reloadIfModified();
+          if (!key.reset()) {
+            LOGGER.warn("Directory of " + tagsFile + " is no longer watched");
+            return;
+          }
+        }
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        LOGGER.debug("Execution script tags watcher stopped");
+      }
+    }
+  }
+}
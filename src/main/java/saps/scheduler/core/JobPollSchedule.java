@@ -0,0 +1,200 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.scheduler.core.arrebol.JobSubmitted;
+
+/**
+ * Schedule of the next Arrebol status lookup of each submitted job, so the checker only polls the
+ * jobs likely to have finished. The runtime of each phase is learned from the jobs that succeeded,
+ * as a moving average and mean deviation (as TCP estimates round trip times). A job is polled more
+ * and more often as it approaches the earliest time jobs of its phase usually finish, at every
+ * sweep while it is within the usual runtimes, and less and less often once it runs for longer.
+ *
+ * <p>Until a phase has a runtime estimate, its jobs are polled at every sweep. Delays are always
+ * kept between the min and max poll intervals.
+ */
+public class JobPollSchedule {
+
+  private static final double MEAN_GAIN = 0.125;
+  private static final double DEVIATION_GAIN = 0.25;
+  private static final int DEVIATIONS_BEFORE = 2;
+  private static final int DEVIATIONS_AFTER = 4;
+
+  private final long minInterval;
+  private final long maxInterval;
+  private final DelayQueue<ScheduledPoll> polls;
+  private final ConcurrentMap<String, ScheduledPoll> scheduled;
+  private final Map<ImageTaskState, RuntimeEstimate> estimates;
+
+  /**
+   * @param minInterval min time between two lookups of a job, in milliseconds
+   * @param maxInterval max time between two lookups of a job, in milliseconds
+   */
+  public JobPollSchedule(long minInterval, long maxInterval) {
+    if (minInterval < 0 || maxInterval < minInterval)
+      throw new IllegalArgumentException(
+          "Poll intervals must not be negative, and the max not lower than the min");
+
+    this.minInterval = minInterval;
+    this.maxInterval = maxInterval;
+    this.polls = new DelayQueue<ScheduledPoll>();
+    this.scheduled = new ConcurrentHashMap<String, ScheduledPoll>();
+    this.estimates = new EnumMap<ImageTaskState, RuntimeEstimate>(ImageTaskState.class);
+  }
+
+  /**
+   * This function takes the jobs due to be polled. Submitted jobs not scheduled yet are scheduled
+   * first, and the jobs taken are no longer scheduled until {@link #schedule(JobSubmitted)}.
+   *
+   * @param submittedJobs jobs in the submitted job list
+   * @return jobs to be polled now
+   */
+  public List<JobSubmitted> takeDueJobs(List<JobSubmitted> submittedJobs) {
+    for (JobSubmitted job : submittedJobs)
+      if (!scheduled.containsKey(job.getJobId())) schedule(job);
+
+    List<ScheduledPoll> duePolls = new ArrayList<ScheduledPoll>();
+    polls.drainTo(duePolls);
+
+    List<JobSubmitted> dueJobs = new ArrayList<JobSubmitted>(duePolls.size());
+    for (ScheduledPoll poll : duePolls) {
+      if (scheduled.remove(poll.job.getJobId(), poll)) dueJobs.add(poll.job);
+    }
+    return dueJobs;
+  }
+
+  /**
+   * This function schedules the next lookup of a job, replacing any scheduled one.
+   *
+   * @param job job to be polled
+   */
+  public void schedule(JobSubmitted job) {
+    schedule(job, getDelay(job, System.currentTimeMillis()));
+  }
+
+  /**
+   * This function schedules a job to be looked up again after the min interval, e.g. because its
+   * last lookup failed.
+   *
+   * @param job job to be polled
+   */
+  public void retry(JobSubmitted job) {
+    schedule(job, minInterval);
+  }
+
+  /**
+   * This function cancels the lookups of a job that left the submitted job list.
+   *
+   * @param job job not to be polled anymore
+   */
+  public void forget(JobSubmitted job) {
+    scheduled.remove(job.getJobId());
+  }
+
+  /** @return true if the job has a lookup scheduled */
+  public boolean isScheduled(JobSubmitted job) {
+    return scheduled.containsKey(job.getJobId());
+  }
+
+  /**
+   * This function learns the runtime of the phase of a job that just succeeded.
+   *
+   * @param job job that succeeded
+   */
+  public void recordSuccess(JobSubmitted job) {
+    long runtime = System.currentTimeMillis() - job.getSubmittedAt();
+    if (runtime < 0) return;
+
+    synchronized (estimates) {
+      RuntimeEstimate estimate = estimates.get(job.getPhase());
+      if (estimate == null) estimates.put(job.getPhase(), new RuntimeEstimate(runtime));
+      else estimate.update(runtime);
+    }
+  }
+
+  /**
+   * This function gets how long to wait before looking up a job, from the runtime estimate of its
+   * phase and for how long it is running.
+   *
+   * @param job job to be polled
+   * @param now current time in milliseconds
+   * @return delay in milliseconds
+   */
+  long getDelay(JobSubmitted job, long now) {
+    double mean;
+    double deviation;
+    synchronized (estimates) {
+      RuntimeEstimate estimate = estimates.get(job.getPhase());
+      if (estimate == null) return minInterval;
+
+      mean = estimate.mean;
+      deviation = estimate.deviation;
+    }
+
+    long age = now - job.getSubmittedAt();
+    double earliest = mean - DEVIATIONS_BEFORE * deviation;
+    double latest = mean + DEVIATIONS_AFTER * deviation;
+
+    // Halving the distance to the window, the job is polled O(log) times before it
+    double delay;
+    if (age < earliest) delay = (earliest - age) / 2;
+    else if (age <= latest) delay = minInterval;
+    else delay = (age - latest) / 2;
+
+    return Math.max(minInterval, Math.min(maxInterval, (long) delay));
+  }
+
+  private void schedule(JobSubmitted job, long delay) {
+    ScheduledPoll poll = new ScheduledPoll(job, System.currentTimeMillis() + delay);
+    ScheduledPoll previous = scheduled.put(job.getJobId(), poll);
+    if (previous != null) polls.remove(previous);
+    polls.add(poll);
+  }
+
+  private static class RuntimeEstimate {
+
+    private double mean;
+    private double deviation;
+
+    RuntimeEstimate(long runtime) {
+      this.mean = runtime;
+      this.deviation = runtime / 2.0;
+    }
+
+    void update(long runtime) {
+      deviation += DEVIATION_GAIN * (Math.abs(runtime - mean) - deviation);
+      mean += MEAN_GAIN * (runtime - mean);
+    }
+  }
+
+  private static class ScheduledPoll implements Delayed {
+
+    private final JobSubmitted job;
+    private final long dueAt;
+
+    ScheduledPoll(JobSubmitted job, long dueAt) {
+      this.job = job;
+      this.dueAt = dueAt;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(dueAt, ((ScheduledPoll) other).dueAt);
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import saps.scheduler.core.arrebol.JobResponseCache;
+import saps.scheduler.core.arrebol.JobStatus;
+import saps.scheduler.core.arrebol.JobSubmitted;
+
+/**
+ * Fans out the Arrebol status lookups of the submitted jobs across a worker pool, keeping at most
+ * {@code maxInFlight} requests to Arrebol at the same time. Jobs are looked up in batches of
+ * {@code batchSize}, each batch being a single request when Arrebol supports it. The results are
+ * handed to the listener in the calling thread as soon as they arrive, so the Catalog is still
+ * updated by a single thread.
+ */
+public class JobStatusPoller {
+
+  private static final Logger LOGGER = Logger.getLogger(JobStatusPoller.class);
+
+  private final ExecutorService executor;
+  private final int maxInFlight;
+  private final int batchSize;
+
+  public interface Listener {
+
+    /**
+     * This function is called, in the polling thread, for each job whose status was returned. Jobs
+     * whose status could not be checked are not notified.
+     *
+     * @param job submitted job
+     * @param jobResponse job status returned from Arrebol, or null if the job was not found
+     */
+    public void onJobStatus(JobSubmitted job, JobStatus jobResponse);
+  }
+
+  public JobStatusPoller(int poolSize, int maxInFlight, int batchSize) {
+    if (poolSize <= 0 || maxInFlight <= 0 || batchSize <= 0)
+      throw new IllegalArgumentException(
+          "Pool size, max in-flight requests and batch size must be positive");
+
+    this.maxInFlight = maxInFlight;
+    this.batchSize = batchSize;
+    this.executor = Executors.newFixedThreadPool(poolSize, new PollerThreadFactory());
+  }
+
+  /**
+   * This function gets the status of each job in Arrebol and notifies the listener as the responses
+   * arrive. It returns when all jobs were notified.
+   *
+   * @param jobs jobs to be polled
+   * @param responses job responses already fetched in the current sweep
+   * @param listener listener to be notified with each job response
+   */
+  public void poll(List<JobSubmitted> jobs, JobResponseCache responses, Listener listener) {
+    CompletionService<List<PollResult>> completionService =
+        new ExecutorCompletionService<List<PollResult>>(executor);
+    Semaphore inFlight = new Semaphore(maxInFlight);
+    int pending = 0;
+
+    try {
+      for (int from = 0; from < jobs.size(); from += batchSize) {
+        List<JobSubmitted> batch = jobs.subList(from, Math.min(from + batchSize, jobs.size()));
+
+        while (!inFlight.tryAcquire()) {
+          handle(completionService.take(), listener);
+          pending--;
+        }
+
+        completionService.submit(new PollTask(batch, responses, inFlight));
+        pending++;
+      }
+
+      while (pending > 0) {
+        handle(completionService.take(), listener);
+        pending--;
+      }
+    } catch (InterruptedException e) {
+      LOGGER.warn("Interrupted while polling jobs, " + pending + " responses were discarded");
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private void handle(Future<List<PollResult>> future, Listener listener)
+      throws InterruptedException {
+    List<PollResult> results;
+    try {
+      results = future.get();
+    } catch (ExecutionException e) {
+      LOGGER.error("Error while polling job status in Arrebol", e.getCause());
+      return;
+    }
+
+    for (PollResult result : results) {
+      try {
+        listener.onJobStatus(result.job, result.jobResponse);
+      } catch (Exception e) {
+        LOGGER.error("Error while handling status of job [" + result.job.getJobId() + "]", e);
+      }
+    }
+  }
+
+  private static class PollTask implements Callable<List<PollResult>> {
+
+    private final List<JobSubmitted> batch;
+    private final JobResponseCache responses;
+    private final Semaphore inFlight;
+
+    PollTask(List<JobSubmitted> batch, JobResponseCache responses, Semaphore inFlight) {
+      this.batch = batch;
+      this.responses = responses;
+      this.inFlight = inFlight;
+    }
+
+    @Override
+    public List<PollResult> call() {
+      try {
+        List<String> jobIds = new ArrayList<String>(batch.size());
+        for (JobSubmitted job : batch) jobIds.add(job.getJobId());
+
+        Map<String, JobStatus> jobResponses =
+            responses.getJobsById(jobIds, "gets jobs by ID " + jobIds);
+
+        List<PollResult> results = new ArrayList<PollResult>(batch.size());
+        for (JobSubmitted job : batch)
+          if (jobResponses.containsKey(job.getJobId()))
+            results.add(new PollResult(job, jobResponses.get(job.getJobId())));
+        return results;
+      } finally {
+        inFlight.release();
+      }
+    }
+  }
+
+  private static class PollResult {
+
+    private final JobSubmitted job;
+    private final JobStatus jobResponse;
+
+    PollResult(JobSubmitted job, JobStatus jobResponse) {
+      this.job = job;
+      this.jobResponse = jobResponse;
+    }
+  }
+
+  private static class PollerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "saps-checker-poller-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -5,6 +5,10 @@ import java.io.FileInputStream;
 import java.util.Objects;
 import java.util.Properties;
 import org.apache.log4j.Logger;
+import saps.scheduler.core.arrebol.JobNotificationServer;
+import saps.scheduler.core.metrics.Gauge;
+import saps.scheduler.core.metrics.MetricsServer;
+import saps.scheduler.core.metrics.SchedulerMetrics;
 
 public class SchedulerMain {
 
@@ -32,22 +36,82 @@ public class SchedulerMain {
     properties.load(input);
 
     LOGGER.info("Trying to start Saps Controller");
-    DefaultScheduler sapsController = new DefaultScheduler(properties);
+    final DefaultScheduler sapsController = new DefaultScheduler(properties);
+    final SchedulerRuntime runtime = new SchedulerRuntime(sapsController, properties);
+    SchedulerMetrics.JOBS_IN_FLIGHT.register(
+        new Gauge() {
+          @Override
+          public double get() {
+            return sapsController.countJobsInFlight();
+          }
+        });
+    final MetricsServer metricsServer = createMetricsServer(properties);
+    final JobNotificationServer notificationServer =
+        createJobNotificationServer(properties, sapsController);
 
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread() {
+              @Override
+              public void run() {
+                if (notificationServer != null) notificationServer.stop();
+                runtime.stop();
+                sapsController.close();
+                if (metricsServer != null) metricsServer.stop();
+              }
+            });
+
+    if (metricsServer != null) metricsServer.start();
+    if (notificationServer != null) notificationServer.start();
 
     LOGGER.info("Saps Controller starting.");
+    runtime.start();
+  }
 
+  private static MetricsServer createMetricsServer(Properties properties) {
+    if (properties.getProperty(SchedulerPropertiesConstants.METRICS_PORT) == null) {
+      LOGGER.info(
+          "Property ["
+              + SchedulerPropertiesConstants.METRICS_PORT
+              + "] not set, metrics are not served");
+      return null;
+    }
 
-    while (true) {
-      sapsController.recovery();
-      Thread.sleep(5000);
-      
-      sapsController.schedule();
-      Thread.sleep(5000); 
-      
-      sapsController.checker();
-      Thread.sleep(5000); 
+    int port =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties, SchedulerPropertiesConstants.METRICS_PORT, 0);
+    return new MetricsServer(port, SchedulerMetrics.REGISTRY);
+  }
 
+  private static JobNotificationServer createJobNotificationServer(
+      Properties properties, final DefaultScheduler scheduler) {
+    if (properties.getProperty(SchedulerPropertiesConstants.JOB_NOTIFICATION_PORT) == null) {
+      LOGGER.info(
+          "Property ["
+              + SchedulerPropertiesConstants.JOB_NOTIFICATION_PORT
+              + "] not set, finished jobs are found by the checker only");
+      return null;
     }
+
+    int port =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties, SchedulerPropertiesConstants.JOB_NOTIFICATION_PORT, 0);
+    String token =
+        properties.getProperty(SchedulerPropertiesConstants.JOB_NOTIFICATION_TOKEN, "").trim();
+    if (token.isEmpty())
+      throw new IllegalArgumentException(
+          "Property ["
+              + SchedulerPropertiesConstants.JOB_NOTIFICATION_TOKEN
+              + "] must be set to receive job notifications");
+
+    return new JobNotificationServer(
+        port,
+        token,
+        new JobNotificationServer.Listener() {
+          @Override
+          public boolean onJobNotification(String jobId) {
+            return scheduler.applyJobNotification(jobId);
+          }
+        });
   }
-}
\ No newline at end of file
+}
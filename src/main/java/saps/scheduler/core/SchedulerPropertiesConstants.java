@@ -0,0 +1,65 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+/**
+ * Properties read only by the Scheduler component. Properties shared with the other SAPS components
+ * live in {@link saps.common.utils.SapsPropertiesConstants}.
+ */
+public class SchedulerPropertiesConstants {
+
+  // Checker
+  public static final String CHECKER_POOL_SIZE = "saps_checker_pool_size";
+  public static final String ARREBOL_MAX_INFLIGHT_REQUESTS = "arrebol_max_inflight_requests";
+  public static final String ARREBOL_STATUS_BATCH_SIZE = "arrebol_status_batch_size";
+  public static final String CHECKER_MIN_POLL_INTERVAL = "saps_checker_min_poll_interval_seconds";
+  public static final String CHECKER_MAX_POLL_INTERVAL = "saps_checker_max_poll_interval_seconds";
+
+  // Submission
+  public static final String SUBMITTER_POOL_SIZE = "saps_submitter_pool_size";
+  public static final String SUBMIT_QUEUE_SIZE = "saps_submit_queue_size";
+
+  // Task selection
+  public static final String SELECTOR = "saps_selector";
+  public static final String SELECTOR_USER_WEIGHTS = "saps_selector_user_weights";
+  public static final String SELECTOR_AGING_TIME = "saps_selector_aging_seconds";
+  public static final String SELECTOR_IDLE_EXPIRY = "saps_selector_idle_expiry_seconds";
+
+  // Submission journal
+  public static final String JOURNAL_PATH = "saps_journal_path";
+  public static final String JOURNAL_COMPACTION_FACTOR = "saps_journal_compaction_factor";
+
+  // Job notifications
+  public static final String JOB_NOTIFICATION_PORT = "saps_job_notification_port";
+  public static final String JOB_NOTIFICATION_TOKEN = "saps_job_notification_token";
+  public static final String JOB_NOTIFICATION_RECONCILIATION_PERIOD =
+      "saps_job_notification_reconciliation_seconds";
+
+  // Metrics
+  public static final String METRICS_PORT = "saps_metrics_port";
+
+  // Arrebol endpoints
+  public static final String ARREBOL_ENDPOINTS = "arrebol_endpoints";
+
+  // Arrebol capacity
+  public static final String ARREBOL_MAX_WAITING_JOBS = "arrebol_max_waiting_jobs";
+  public static final String ARREBOL_CAPACITY_RESYNC_PERIOD = "arrebol_capacity_resync_seconds";
+  public static final String ARREBOL_CAPACITY_MAX_DRIFT = "arrebol_capacity_max_drift";
+
+  // Arrebol retries
+  public static final String ARREBOL_RETRY_BASE_DELAY = "arrebol_retry_base_delay_millis";
+  public static final String ARREBOL_RETRY_MAX_DELAY = "arrebol_retry_max_delay_millis";
+  public static final String ARREBOL_READ_DEADLINE = "arrebol_read_deadline_seconds";
+  public static final String ARREBOL_SUBMIT_DEADLINE = "arrebol_submit_deadline_seconds";
+  public static final String ARREBOL_CIRCUIT_FAILURE_THRESHOLD =
+      "arrebol_circuit_failure_threshold";
+  public static final String ARREBOL_CIRCUIT_OPEN_TIME = "arrebol_circuit_open_seconds";
+
+  // Arrebol HTTP transport
+  public static final String ARREBOL_HTTP_CONNECT_TIMEOUT = "arrebol_http_connect_timeout";
+  public static final String ARREBOL_HTTP_SOCKET_TIMEOUT = "arrebol_http_socket_timeout";
+  public static final String ARREBOL_HTTP_MAX_CONNECTIONS = "arrebol_http_max_connections";
+  public static final String ARREBOL_HTTP_MAX_CONNECTIONS_PER_ROUTE =
+      "arrebol_http_max_connections_per_route";
+  public static final String ARREBOL_HTTP_IDLE_CONNECTION_TIMEOUT =
+      "arrebol_http_idle_connection_timeout";
+}
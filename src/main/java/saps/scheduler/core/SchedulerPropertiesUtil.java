@@ -0,0 +1,54 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.util.Properties;
+import org.apache.log4j.Logger;
+
+public class SchedulerPropertiesUtil {
+
+  private static final Logger LOGGER = Logger.getLogger(SchedulerPropertiesUtil.class);
+
+  /**
+   * This function reads an optional numeric property.
+   *
+   * @param properties properties to be read
+   * @param key property key
+   * @param defaultValue value used when the property is not set
+   * @return property value, or default value if it is not set
+   * @throws IllegalArgumentException if the property is set but is not a number
+   */
+  public static long getLong(Properties properties, String key, long defaultValue) {
+    String value = properties.getProperty(key);
+
+    if (value == null || value.trim().isEmpty()) {
+      LOGGER.info("Property [" + key + "] not set, using default value " + defaultValue);
+      return defaultValue;
+    }
+
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(
+          "Property [" + key + "] must be a number, but was [" + value + "]", e);
+    }
+  }
+
+  /**
+   * This function reads an optional numeric property that must be positive.
+   *
+   * @param properties properties to be read
+   * @param key property key
+   * @param defaultValue value used when the property is not set
+   * @return property value, or default value if it is not set
+   * @throws IllegalArgumentException if the property is set but is not a positive integer
+   */
+  public static int getPositiveInt(Properties properties, String key, int defaultValue) {
+    long value = getLong(properties, key, defaultValue);
+
+    if (value <= 0 || value > Integer.MAX_VALUE)
+      throw new IllegalArgumentException(
+          "Property [" + key + "] must be a positive integer, but was [" + value + "]");
+
+    return (int) value;
+  }
+}
@@ -0,0 +1,199 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import saps.common.utils.SapsPropertiesConstants;
+import saps.scheduler.core.arrebol.exceptions.ArrebolUnavailableException;
+import saps.scheduler.core.metrics.Histogram;
+import saps.scheduler.core.metrics.SchedulerMetrics;
+import saps.scheduler.interfaces.Scheduler;
+
+public class SchedulerRuntime {
+
+  private static final Logger LOGGER = Logger.getLogger(SchedulerRuntime.class);
+
+  private static final long DEFAULT_SUBMISSOR_PERIOD_SECONDS = 60;
+  private static final long DEFAULT_CHECKER_PERIOD_SECONDS = 30;
+  private static final long DEFAULT_RECONCILIATION_PERIOD_SECONDS = 300;
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+  private final Scheduler scheduler;
+  private final long submissorPeriod;
+  private final long checkerPeriod;
+  private final ScheduledExecutorService executor;
+
+  public SchedulerRuntime(Scheduler scheduler, Properties properties) {
+    this(
+        scheduler,
+        SchedulerPropertiesUtil.getLong(
+            properties,
+            SapsPropertiesConstants.SAPS_EXECUTION_PERIOD_SUBMISSOR,
+            DEFAULT_SUBMISSOR_PERIOD_SECONDS),
+        getCheckerPeriod(properties));
+  }
+
+  public SchedulerRuntime(Scheduler scheduler, long submissorPeriod, long checkerPeriod) {
+    if (submissorPeriod <= 0 || checkerPeriod <= 0)
+      throw new IllegalArgumentException("Scheduler execution periods must be positive");
+
+    this.scheduler = scheduler;
+    this.submissorPeriod = submissorPeriod;
+    this.checkerPeriod = checkerPeriod;
+    this.executor = Executors.newScheduledThreadPool(2, new PipelineThreadFactory());
+  }
+
+  /**
+   * When job notifications are received, the checker only has to reconcile the jobs whose
+   * notification was lost, so it runs with the (longer) reconciliation period.
+   */
+  private static long getCheckerPeriod(Properties properties) {
+    if (properties.getProperty(SchedulerPropertiesConstants.JOB_NOTIFICATION_PORT) != null)
+      return SchedulerPropertiesUtil.getLong(
+          properties,
+          SchedulerPropertiesConstants.JOB_NOTIFICATION_RECONCILIATION_PERIOD,
+          DEFAULT_RECONCILIATION_PERIOD_SECONDS);
+
+    return SchedulerPropertiesUtil.getLong(
+        properties,
+        SapsPropertiesConstants.SAPS_EXECUTION_PERIOD_CHECKER,
+        DEFAULT_CHECKER_PERIOD_SECONDS);
+  }
+
+  /**
+   * This function runs the recovery until it succeeds and then starts the submission and checker
+   * pipelines, each one with its own period. A pipeline only waits for its own previous execution,
+   * so a slow checker does not delay the submission of new tasks (and vice versa). Tasks left
+   * without a job id after the recovery (e.g. by a failed Catalog write) are reconciled by the
+   * submission pipeline, before a submission cycle, at most once per checker period.
+   */
+  public void start() throws InterruptedException {
+    LOGGER.info("Running recovery before starting the scheduler pipelines");
+    while (!recover()) {
+      LOGGER.info("Retrying recovery in " + checkerPeriod + " seconds");
+      TimeUnit.SECONDS.sleep(checkerPeriod);
+    }
+
+    LOGGER.info(
+        "Starting submission pipeline with period of "
+            + submissorPeriod
+            + " seconds and checker pipeline with period of "
+            + checkerPeriod
+            + " seconds");
+
+    executor.scheduleWithFixedDelay(
+        new Pipeline("schedule") {
+          private long lastReconciliation = System.nanoTime();
+
+          @Override
+          protected void execute() {
+            if (System.nanoTime() - lastReconciliation >= TimeUnit.SECONDS.toNanos(checkerPeriod)) {
+              lastReconciliation = System.nanoTime();
+              reconcile();
+            }
+            scheduler.schedule();
+          }
+        },
+        0,
+        submissorPeriod,
+        TimeUnit.SECONDS);
+
+    executor.scheduleWithFixedDelay(
+        new Pipeline("checker") {
+          @Override
+          protected void execute() {
+            scheduler.checker();
+          }
+        },
+        0,
+        checkerPeriod,
+        TimeUnit.SECONDS);
+  }
+
+  /**
+   * The pipelines must not start before the submitted jobs are recovered, so a recovery given up
+   * because Arrebol is unavailable is tried again instead of skipped.
+   */
+  private boolean recover() {
+    long start = System.nanoTime();
+    try {
+      scheduler.recovery();
+      return true;
+    } catch (ArrebolUnavailableException e) {
+      LOGGER.warn("Arrebol is unavailable, recovery could not be completed", e);
+      return false;
+    } finally {
+      SchedulerMetrics.CYCLE_DURATION.labels("recovery").observeSince(start);
+    }
+  }
+
+  private void reconcile() {
+    long start = System.nanoTime();
+    try {
+      scheduler.reconcile();
+    } catch (RuntimeException e) {
+      LOGGER.error("Error while reconciling tasks without Arrebol job id", e);
+    } finally {
+      SchedulerMetrics.CYCLE_DURATION.labels("reconciliation").observeSince(start);
+    }
+  }
+
+  /** This function stops the pipelines, waiting for the running executions to finish. */
+  public void stop() {
+    LOGGER.info("Stopping scheduler pipelines");
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        executor.shutdownNow();
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * A periodic pipeline must never throw, otherwise the executor silently cancels its next
+   * executions.
+   */
+  private abstract static class Pipeline implements Runnable {
+
+    private final String name;
+    private final Histogram cycleDuration;
+
+    Pipeline(String name) {
+      this.name = name;
+      this.cycleDuration = SchedulerMetrics.CYCLE_DURATION.labels(name);
+    }
+
+    protected abstract void execute();
+
+    @Override
+    public void run() {
+      long start = System.nanoTime();
+      try {
+        execute();
+      } catch (Throwable e) {
+        LOGGER.error("Error while running " + name + " pipeline", e);
+      } finally {
+        cycleDuration.observeSince(start);
+      }
+    }
+  }
+
+  private static class PipelineThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "saps-scheduler-pipeline-" + count.incrementAndGet());
+      thread.setDaemon(false);
+      return thread;
+    }
+  }
+}
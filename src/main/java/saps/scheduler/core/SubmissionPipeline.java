@@ -0,0 +1,256 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+
+/**
+ * Submits tasks to Arrebol in three stages, so the Arrebol requests of some tasks overlap with the
+ * Catalog writes of others:
+ *
+ * <ol>
+ *   <li>prepare: the task is persisted in its next state (calling thread);
+ *   <li>submit: the job is sent to Arrebol (worker pool);
+ *   <li>complete: the job id, or the failure, is persisted (calling thread).
+ * </ol>
+ *
+ * Tasks are prepared in groups as the queue has room, and a group is only submitted after the
+ * stages are flushed, so the writes of a whole group go to the Catalog together. All Catalog writes
+ * happen in the calling thread. At most {@code queueSize} tasks can be between the prepare and
+ * complete stages; when the queue is full the calling thread completes finished submissions before
+ * preparing more tasks. A failure affects only its own task, except a failed flush, which cancels
+ * the submission of the whole group.
+ */
+public class SubmissionPipeline {
+
+  private static final Logger LOGGER = Logger.getLogger(SubmissionPipeline.class);
+
+  private final ExecutorService executor;
+  private final int queueSize;
+
+  public interface Stages {
+
+    /**
+     * This function persists the task in the state it will be once its job is submitted.
+     *
+     * @param task task to be submitted
+     * @return next state of the task
+     */
+    public ImageTaskState prepare(SapsImage task);
+
+    /**
+     * This function submits the task job to Arrebol. It is called in a worker thread.
+     *
+     * @param task task to be submitted
+     * @param nextState state returned by the prepare stage
+     * @return job id in Arrebol
+     */
+    public String submit(SapsImage task, ImageTaskState nextState) throws Exception;
+
+    /**
+     * This function persists a successful submission.
+     *
+     * @param task submitted task
+     * @param jobId job id in Arrebol
+     */
+    public void complete(SapsImage task, String jobId);
+
+    /**
+     * This function persists a failed submission.
+     *
+     * @param task task whose submission failed
+     * @param e submission error
+     */
+    public void fail(SapsImage task, Exception e);
+
+    /**
+     * This function undoes the prepare stage of a task that will not be submitted, because the
+     * flush before its submission failed.
+     *
+     * @param task prepared task
+     */
+    public void cancel(SapsImage task);
+
+    /**
+     * This function persists the writes of the other stages that may still be buffered. It is
+     * called, in the calling thread, before prepared tasks are submitted and when the run ends.
+     */
+    public void flush();
+  }
+
+  public SubmissionPipeline(int poolSize, int queueSize) {
+    if (poolSize <= 0 || queueSize <= 0)
+      throw new IllegalArgumentException("Pool size and queue size must be positive");
+
+    this.queueSize = queueSize;
+    this.executor = Executors.newFixedThreadPool(poolSize, new SubmitterThreadFactory());
+  }
+
+  /**
+   * This function runs the tasks through the pipeline stages and returns when every task was
+   * completed or failed.
+   *
+   * @param tasks tasks to be submitted
+   * @param stages pipeline stages
+   */
+  public void run(List<SapsImage> tasks, Stages stages) {
+    CompletionService<Submission> completionService =
+        new ExecutorCompletionService<Submission>(executor);
+    Semaphore queue = new Semaphore(queueSize);
+    Iterator<SapsImage> next = tasks.iterator();
+    int pending = 0;
+
+    try {
+      while (next.hasNext() || pending > 0) {
+        Future<Submission> done;
+        while ((done = completionService.poll()) != null) {
+          complete(done, stages, queue);
+          pending--;
+        }
+
+        List<Prepared> prepared = new ArrayList<Prepared>();
+        while (next.hasNext() && queue.tryAcquire()) {
+          SapsImage task = next.next();
+          try {
+            prepared.add(new Prepared(task, stages.prepare(task)));
+          } catch (Exception e) {
+            LOGGER.error("Error while preparing task [" + task.getTaskId() + "] for submission", e);
+            queue.release();
+          }
+        }
+
+        if (!prepared.isEmpty() && flush(stages)) {
+          for (Prepared task : prepared)
+            completionService.submit(new SubmitTask(task.task, task.nextState, stages));
+          pending += prepared.size();
+        } else if (!prepared.isEmpty()) {
+          for (Prepared task : prepared) cancel(task.task, stages);
+          queue.release(prepared.size());
+        } else if (pending > 0) {
+          complete(completionService.take(), stages, queue);
+          pending--;
+        }
+      }
+    } catch (InterruptedException e) {
+      LOGGER.warn("Interrupted while submitting tasks, " + pending + " submissions not completed");
+      Thread.currentThread().interrupt();
+    } finally {
+      flush(stages);
+    }
+  }
+
+  private boolean flush(Stages stages) {
+    try {
+      stages.flush();
+      return true;
+    } catch (RuntimeException e) {
+      LOGGER.error("Error while persisting submission stages", e);
+      return false;
+    }
+  }
+
+  private void cancel(SapsImage task, Stages stages) {
+    try {
+      stages.cancel(task);
+    } catch (RuntimeException e) {
+      LOGGER.error("Error while cancelling submission of task [" + task.getTaskId() + "]", e);
+    }
+  }
+
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  private void complete(Future<Submission> future, Stages stages, Semaphore queue)
+      throws InterruptedException {
+    try {
+      Submission submission;
+      try {
+        submission = future.get();
+      } catch (ExecutionException e) {
+        LOGGER.error("Unexpected error in submission worker", e.getCause());
+        return;
+      }
+
+      if (submission.error == null) stages.complete(submission.task, submission.jobId);
+      else stages.fail(submission.task, submission.error);
+    } catch (RuntimeException e) {
+      LOGGER.error("Error while completing submission", e);
+    } finally {
+      queue.release();
+    }
+  }
+
+  private static class SubmitTask implements Callable<Submission> {
+
+    private final SapsImage task;
+    private final ImageTaskState nextState;
+    private final Stages stages;
+
+    SubmitTask(SapsImage task, ImageTaskState nextState, Stages stages) {
+      this.task = task;
+      this.nextState = nextState;
+      this.stages = stages;
+    }
+
+    @Override
+    public Submission call() {
+      try {
+        return new Submission(task, stages.submit(task, nextState), null);
+      } catch (Exception e) {
+        LOGGER.error("Error while submitting task [" + task.getTaskId() + "] to Arrebol", e);
+        return new Submission(task, null, e);
+      }
+    }
+  }
+
+  private static class Prepared {
+
+    private final SapsImage task;
+    private final ImageTaskState nextState;
+
+    Prepared(SapsImage task, ImageTaskState nextState) {
+      this.task = task;
+      this.nextState = nextState;
+    }
+  }
+
+  private static class Submission {
+
+    private final SapsImage task;
+    private final String jobId;
+    private final Exception error;
+
+    Submission(SapsImage task, String jobId, Exception error) {
+      this.task = task;
+      this.jobId = jobId;
+      this.error = error;
+    }
+  }
+
+  private static class SubmitterThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "saps-submitter-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.common.utils.ExecutionScriptTagUtil;
+import saps.scheduler.core.metrics.Counter;
+import saps.scheduler.core.metrics.Histogram;
+import saps.scheduler.core.metrics.SchedulerMetrics;
+
+/**
+ * Workflow of a task through the phases run in Arrebol: input downloading, preprocessing and
+ * processing. Each phase is submitted from a waiting state, runs in its own state, and goes to the
+ * waiting state of the next phase when its job succeeds, to failed when it fails, or back to its
+ * waiting state when it is rolled back.
+ *
+ * <p>The transitions are kept in tables indexed by state and event, built once, so looking up a
+ * transition does not allocate. Every transition applied is counted, along with the time the task
+ * spent in the state it leaves, when that time is known.
+ */
+public class TaskStateMachine {
+
+  /** What happens to a task in the workflow. */
+  public enum Event {
+    /** The job of the next phase is submitted to Arrebol. */
+    SUBMIT,
+    /** The job of the phase finished with success. */
+    SUCCEED,
+    /** The job of the phase finished with failure, or could not be submitted. */
+    FAIL,
+    /** The job of the phase is given up, to be submitted again. */
+    ROLL_BACK
+  }
+
+  /** Phase of the workflow, each one run by an Arrebol job in its own state. */
+  public enum Phase {
+    INPUT_DOWNLOADING(
+        ImageTaskState.CREATED,
+        ImageTaskState.DOWNLOADING,
+        ImageTaskState.DOWNLOADED,
+        ExecutionScriptTagUtil.INPUT_DOWNLOADER) {
+      @Override
+      public String getTag(SapsImage task) {
+        return task.getInputdownloadingTag();
+      }
+
+      @Override
+      public String getDigest(SapsImage task) {
+        return task.getDigestInputdownloading();
+      }
+    },
+    PREPROCESSING(
+        ImageTaskState.DOWNLOADED,
+        ImageTaskState.PREPROCESSING,
+        ImageTaskState.READY,
+        ExecutionScriptTagUtil.PRE_PROCESSING) {
+      @Override
+      public String getTag(SapsImage task) {
+        return task.getPreprocessingTag();
+      }
+
+      @Override
+      public String getDigest(SapsImage task) {
+        return task.getDigestPreprocessing();
+      }
+    },
+    PROCESSING(
+        ImageTaskState.READY,
+        ImageTaskState.RUNNING,
+        ImageTaskState.FINISHED,
+        ExecutionScriptTagUtil.PROCESSING) {
+      @Override
+      public String getTag(SapsImage task) {
+        return task.getProcessingTag();
+      }
+
+      @Override
+      public String getDigest(SapsImage task) {
+        return task.getDigestProcessing();
+      }
+    };
+
+    private final ImageTaskState waitingState;
+    private final ImageTaskState runningState;
+    private final ImageTaskState finishedState;
+    private final String repository;
+
+    Phase(
+        ImageTaskState waitingState,
+        ImageTaskState runningState,
+        ImageTaskState finishedState,
+        String repository) {
+      this.waitingState = waitingState;
+      this.runningState = runningState;
+      this.finishedState = finishedState;
+      this.repository = repository;
+    }
+
+    /** @return state of the tasks waiting for this phase to be submitted */
+    public ImageTaskState getWaitingState() {
+      return waitingState;
+    }
+
+    /** @return state of the tasks whose job of this phase is in Arrebol */
+    public ImageTaskState getRunningState() {
+      return runningState;
+    }
+
+    /** @return state of the tasks whose job of this phase succeeded */
+    public ImageTaskState getFinishedState() {
+      return finishedState;
+    }
+
+    /** @return repository of the execution script tags of this phase */
+    public String getRepository() {
+      return repository;
+    }
+
+    /** @return execution script tag of the task in this phase */
+    public abstract String getTag(SapsImage task);
+
+    /** @return digest of the Docker image of the task in this phase */
+    public abstract String getDigest(SapsImage task);
+  }
+
+  private static final int STATES = ImageTaskState.values().length;
+  private static final int EVENTS = Event.values().length;
+
+  private static final Map<ImageTaskState, Phase> PHASES_BY_RUNNING_STATE;
+  private static final ImageTaskState[][] TRANSITIONS = new ImageTaskState[EVENTS][STATES];
+
+  static {
+    Map<ImageTaskState, Phase> phases = new EnumMap<ImageTaskState, Phase>(ImageTaskState.class);
+
+    for (Phase phase : Phase.values()) {
+      phases.put(phase.runningState, phase);
+
+      TRANSITIONS[Event.SUBMIT.ordinal()][phase.waitingState.ordinal()] = phase.runningState;
+      TRANSITIONS[Event.SUCCEED.ordinal()][phase.runningState.ordinal()] = phase.finishedState;
+      TRANSITIONS[Event.FAIL.ordinal()][phase.runningState.ordinal()] = ImageTaskState.FAILED;
+      TRANSITIONS[Event.ROLL_BACK.ordinal()][phase.runningState.ordinal()] = phase.waitingState;
+    }
+
+    PHASES_BY_RUNNING_STATE = Collections.unmodifiableMap(phases);
+  }
+
+  private final Counter[][] transitionCounts;
+  private final Histogram[] stateDurations;
+
+  public TaskStateMachine() {
+    this.transitionCounts = new Counter[EVENTS][STATES];
+    this.stateDurations = new Histogram[STATES];
+
+    for (Event event : Event.values()) {
+      for (ImageTaskState from : ImageTaskState.values()) {
+        ImageTaskState to = TRANSITIONS[event.ordinal()][from.ordinal()];
+        if (to == null) continue;
+
+        transitionCounts[event.ordinal()][from.ordinal()] =
+            SchedulerMetrics.TASK_TRANSITIONS.labels(from.getValue(), to.getValue());
+        if (stateDurations[from.ordinal()] == null)
+          stateDurations[from.ordinal()] =
+              SchedulerMetrics.TASK_STATE_DURATION.labels(from.getValue());
+      }
+    }
+  }
+
+  /**
+   * This function gets the state a task goes to on the event, without applying the transition.
+   *
+   * @param state current state of the task
+   * @param event event happened to the task
+   * @return next state of the task
+   * @throws IllegalStateException if the event cannot happen to a task in the state
+   */
+  public static ImageTaskState getNextState(ImageTaskState state, Event event) {
+    ImageTaskState next = TRANSITIONS[event.ordinal()][state.ordinal()];
+    if (next == null)
+      throw new IllegalStateException(
+          "Task in state [" + state.getValue() + "] cannot " + event.name().toLowerCase());
+    return next;
+  }
+
+  /**
+   * This function gets the phase run by the job of a task in the state.
+   *
+   * @param runningState state of the task while its job is in Arrebol
+   * @return phase run in the state
+   * @throws IllegalStateException if no phase runs in the state
+   */
+  public static Phase getPhase(ImageTaskState runningState) {
+    Phase phase = PHASES_BY_RUNNING_STATE.get(runningState);
+    if (phase == null)
+      throw new IllegalStateException("No phase runs in state [" + runningState.getValue() + "]");
+    return phase;
+  }
+
+  /**
+   * This function validates and counts the transition of a task on the event. The task itself is
+   * left for the caller to update.
+   *
+   * @param state current state of the task
+   * @param event event happened to the task
+   * @param enteredAt time the task entered its current state in milliseconds, or 0 if not known
+   * @return next state of the task
+   * @throws IllegalStateException if the event cannot happen to a task in the state
+   */
+  public ImageTaskState transition(ImageTaskState state, Event event, long enteredAt) {
+    ImageTaskState next = getNextState(state, event);
+
+    transitionCounts[event.ordinal()][state.ordinal()].inc();
+    if (enteredAt > 0)
+      stateDurations[state.ordinal()].observe(
+          Math.max(0, System.currentTimeMillis() - enteredAt)
+              / (double) TimeUnit.SECONDS.toMillis(1));
+
+    return next;
+  }
+}
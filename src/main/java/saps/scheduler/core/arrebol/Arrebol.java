@@ -13,19 +13,54 @@ public interface Arrebol {
 
   public String addJob(SapsJob job) throws Exception, SubmitJobException;
 
-  public void removeJob(JobSubmitted job);
+  /**
+   * This function removes a job from the submitted job list. Only one of concurrent removals of
+   * the same job succeeds, so the caller that removes a finished job is the one that handles it.
+   *
+   * @param job job to be removed
+   * @return true if the job was removed, false if it was not in the list
+   */
+  public boolean removeJob(JobSubmitted job);
 
   public void addJobInList(JobSubmitted newJob);
 
+  /** @return submitted job with the id, or null if it is not in the submitted job list */
+  public JobSubmitted getJobSubmitted(String jobId);
+
   public void populateJobList(List<SapsImage> taskList);
 
   public List<JobSubmitted> returnAllJobsSubmitted();
 
+  /** @return number of jobs in the submitted job list, counted without copying the list */
+  public int countJobsSubmitted();
+
   public JobResponseDTO checkStatusJobById(String jobId) throws GetJobException;
 
+  /**
+   * This function gets the status of many jobs at once, using as few requests as the Arrebol
+   * service allows. Only the fields in {@link JobStatus} are parsed, use {@link
+   * #checkStatusJobById(String)} to get the full job.
+   *
+   * @param jobIds ids of the jobs to be checked
+   * @return status of the jobs found in Arrebol (only the jobs Arrebol answers it does not know
+   *     are absent)
+   */
+  public List<JobStatus> checkStatusJobsById(List<String> jobIds) throws GetJobException;
+
   public List<JobResponseDTO> checkStatusJobByName(String JobName) throws GetJobException;
 
   public String checkStatusJobString(String jobId) throws GetJobException;
 
   public int getCountSlotsInQueue(String queueId) throws GetCountsSlotsException;
+
+  /**
+   * This function gets how many jobs can still be submitted through {@link #addJob(SapsJob)},
+   * whatever the queues they go to.
+   *
+   * @return number of free slots
+   */
+  public int getCountSlots() throws GetCountsSlotsException;
+
+  /** This function releases the connections to the Arrebol service, on shutdown. */
+  public void close();
 }
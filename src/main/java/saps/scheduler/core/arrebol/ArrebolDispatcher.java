@@ -0,0 +1,403 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.log4j.Logger;
+import saps.common.core.dto.JobResponseDTO;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.SapsJob;
+import saps.scheduler.core.SchedulerPropertiesConstants;
+import saps.scheduler.core.arrebol.exceptions.GetCountsSlotsException;
+import saps.scheduler.core.arrebol.exceptions.GetJobException;
+import saps.scheduler.core.arrebol.exceptions.PartialJobsStatusException;
+import saps.scheduler.core.arrebol.exceptions.SubmitJobException;
+import saps.scheduler.core.arrebol.http.HttpWrapper;
+import saps.scheduler.core.arrebol.retry.CircuitBreaker;
+
+/**
+ * Arrebol made of several endpoints, each one an Arrebol service and queue. Each job is submitted
+ * to the endpoint with more free slots, and the endpoint that owns each job is remembered, so the
+ * job is always looked up where it was submitted. Jobs whose owner is not known (e.g. recovered
+ * from the Catalog after a restart) are located by asking the endpoints.
+ *
+ * <p>Each endpoint has its own circuit breaker for the status lookups, so an endpoint that cannot
+ * be reached is skipped while its circuit is open, and the jobs of the other endpoints are still
+ * checked.
+ */
+public class ArrebolDispatcher implements Arrebol {
+
+  private static final Logger LOGGER = Logger.getLogger(ArrebolDispatcher.class);
+
+  private static final String ENDPOINTS_SEPARATOR = ",";
+  private static final String QUEUE_SEPARATOR = "#";
+
+  private final Map<String, Arrebol> endpoints;
+  private final ConcurrentMap<String, Arrebol> owners;
+  private final Map<Arrebol, CircuitBreaker> breakers;
+
+  /** @param endpoints Arrebol endpoints by name, in order of preference when equally loaded */
+  public ArrebolDispatcher(Map<String, Arrebol> endpoints) {
+    this(endpoints, new Properties());
+  }
+
+  /**
+   * @param endpoints Arrebol endpoints by name, in order of preference when equally loaded
+   * @param properties Scheduler properties, with the circuit breaker settings of the endpoints
+   */
+  public ArrebolDispatcher(Map<String, Arrebol> endpoints, Properties properties) {
+    if (endpoints.isEmpty()) throw new IllegalArgumentException("No Arrebol endpoint was given");
+
+    this.endpoints = Collections.unmodifiableMap(new LinkedHashMap<String, Arrebol>(endpoints));
+    this.owners = new ConcurrentHashMap<String, Arrebol>();
+    this.breakers = new HashMap<Arrebol, CircuitBreaker>();
+    for (Arrebol endpoint : endpoints.values())
+      breakers.put(endpoint, ArrebolUtils.createCircuitBreaker(properties));
+  }
+
+  /**
+   * This function creates a dispatcher over the endpoints in the {@link
+   * SchedulerPropertiesConstants#ARREBOL_ENDPOINTS} property: a comma separated list of Arrebol
+   * base URLs, each one optionally followed by #queue_id (the default queue otherwise).
+   *
+   * @param properties Scheduler properties
+   * @param httpWrapper HTTP transport shared by all endpoints
+   * @return dispatcher over the configured endpoints
+   */
+  public static ArrebolDispatcher create(Properties properties, HttpWrapper httpWrapper) {
+    String endpointsProperty =
+        properties.getProperty(SchedulerPropertiesConstants.ARREBOL_ENDPOINTS);
+    if (endpointsProperty == null)
+      throw new IllegalArgumentException(
+          "Property [" + SchedulerPropertiesConstants.ARREBOL_ENDPOINTS + "] is not set");
+
+    Map<String, Arrebol> endpoints = new LinkedHashMap<String, Arrebol>();
+    for (String endpoint : endpointsProperty.split(ENDPOINTS_SEPARATOR)) {
+      endpoint = endpoint.trim();
+      if (endpoint.isEmpty()) continue;
+
+      String baseUrl = endpoint;
+      String queueId = ArrebolRequestsHelper.DEFAULT_QUEUE_ID;
+      int queueSeparator = endpoint.lastIndexOf(QUEUE_SEPARATOR);
+      if (queueSeparator >= 0) {
+        baseUrl = endpoint.substring(0, queueSeparator);
+        queueId = endpoint.substring(queueSeparator + 1);
+      }
+
+      String name = baseUrl + "/queues/" + queueId;
+      if (endpoints.containsKey(name))
+        throw new IllegalArgumentException("Arrebol endpoint [" + name + "] is repeated");
+
+      endpoints.put(name, new DefaultArrebol(properties, baseUrl, queueId, httpWrapper));
+      LOGGER.info("Dispatching jobs to Arrebol endpoint [" + name + "]");
+    }
+
+    return new ArrebolDispatcher(endpoints, properties);
+  }
+
+  /** The job goes to the endpoint with more free slots, as currently estimated. */
+  @Override
+  public String addJob(SapsJob job) throws Exception, SubmitJobException {
+    String chosenName = null;
+    Arrebol chosen = null;
+    int chosenSlots = Integer.MIN_VALUE;
+
+    for (Map.Entry<String, Arrebol> endpoint : endpoints.entrySet()) {
+      int slots;
+      try {
+        slots = endpoint.getValue().getCountSlots();
+      } catch (GetCountsSlotsException e) {
+        LOGGER.warn("Skipping Arrebol endpoint [" + endpoint.getKey() + "]: " + e.getMessage());
+        continue;
+      }
+
+      if (slots > chosenSlots) {
+        chosenName = endpoint.getKey();
+        chosen = endpoint.getValue();
+        chosenSlots = slots;
+      }
+    }
+
+    if (chosen == null)
+      throw new SubmitJobException(
+          "No Arrebol endpoint could be reached to submit the job",
+          new IllegalStateException("All endpoints failed"));
+
+    String jobId = chosen.addJob(job);
+    owners.put(jobId, chosen);
+    LOGGER.debug("Job [" + jobId + "] was submitted to Arrebol endpoint [" + chosenName + "]");
+
+    return jobId;
+  }
+
+  @Override
+  public boolean removeJob(JobSubmitted job) {
+    Arrebol owner = owners.remove(job.getJobId());
+    if (owner != null) return owner.removeJob(job);
+
+    boolean removed = false;
+    for (Arrebol endpoint : endpoints.values()) removed |= endpoint.removeJob(job);
+    return removed;
+  }
+
+  @Override
+  public void addJobInList(JobSubmitted newJob) {
+    tryToLocate(Collections.singletonList(newJob.getJobId()));
+    getOwnerOrFirst(newJob.getJobId()).addJobInList(newJob);
+  }
+
+  @Override
+  public JobSubmitted getJobSubmitted(String jobId) {
+    Arrebol owner = owners.get(jobId);
+    if (owner != null) return owner.getJobSubmitted(jobId);
+
+    for (Arrebol endpoint : endpoints.values()) {
+      JobSubmitted job = endpoint.getJobSubmitted(jobId);
+      if (job != null) return job;
+    }
+    return null;
+  }
+
+  @Override
+  public void populateJobList(List<SapsImage> taskList) {
+    List<String> jobIds = new ArrayList<String>(taskList.size());
+    for (SapsImage task : taskList) jobIds.add(task.getArrebolJobId());
+    tryToLocate(jobIds);
+
+    Map<Arrebol, List<SapsImage>> tasksByOwner = new HashMap<Arrebol, List<SapsImage>>();
+    for (SapsImage task : taskList) {
+      Arrebol owner = getOwnerOrFirst(task.getArrebolJobId());
+      List<SapsImage> ownerTasks = tasksByOwner.get(owner);
+      if (ownerTasks == null) {
+        ownerTasks = new ArrayList<SapsImage>();
+        tasksByOwner.put(owner, ownerTasks);
+      }
+      ownerTasks.add(task);
+    }
+
+    for (Map.Entry<Arrebol, List<SapsImage>> entry : tasksByOwner.entrySet())
+      entry.getKey().populateJobList(entry.getValue());
+  }
+
+  @Override
+  public List<JobSubmitted> returnAllJobsSubmitted() {
+    List<JobSubmitted> jobs = new ArrayList<JobSubmitted>();
+    for (Arrebol endpoint : endpoints.values()) jobs.addAll(endpoint.returnAllJobsSubmitted());
+    return jobs;
+  }
+
+  @Override
+  public int countJobsSubmitted() {
+    int count = 0;
+    for (Arrebol endpoint : endpoints.values()) count += endpoint.countJobsSubmitted();
+    return count;
+  }
+
+  @Override
+  public JobResponseDTO checkStatusJobById(String jobId) throws GetJobException {
+    Arrebol owner = owners.get(jobId);
+    if (owner != null) return owner.checkStatusJobById(jobId);
+
+    for (Arrebol endpoint : endpoints.values()) {
+      JobResponseDTO job = endpoint.checkStatusJobById(jobId);
+      if (job != null) return job;
+    }
+    return null;
+  }
+
+  /**
+   * Each endpoint is only asked for the jobs it owns. The endpoints that fail, or whose circuit is
+   * open, are skipped.
+   *
+   * @throws PartialJobsStatusException if some endpoints were skipped, with the status of the jobs
+   *     checked in the others
+   */
+  @Override
+  public List<JobStatus> checkStatusJobsById(List<String> jobIds) throws GetJobException {
+    Map<Arrebol, List<String>> jobIdsByOwner = new LinkedHashMap<Arrebol, List<String>>();
+    List<String> unknownJobIds = new ArrayList<String>();
+
+    for (String jobId : jobIds) {
+      Arrebol owner = owners.get(jobId);
+      if (owner == null) {
+        unknownJobIds.add(jobId);
+        continue;
+      }
+
+      List<String> ownerJobIds = jobIdsByOwner.get(owner);
+      if (ownerJobIds == null) {
+        ownerJobIds = new ArrayList<String>();
+        jobIdsByOwner.put(owner, ownerJobIds);
+      }
+      ownerJobIds.add(jobId);
+    }
+
+    List<JobStatus> jobs = new ArrayList<JobStatus>(jobIds.size());
+    List<String> uncheckedJobIds = new ArrayList<String>();
+    for (Map.Entry<Arrebol, List<String>> entry : jobIdsByOwner.entrySet()) {
+      List<JobStatus> ownerJobs = checkStatus(entry.getKey(), entry.getValue());
+      if (ownerJobs != null) jobs.addAll(ownerJobs);
+      else uncheckedJobIds.addAll(entry.getValue());
+    }
+
+    if (!unknownJobIds.isEmpty()) {
+      try {
+        jobs.addAll(locate(unknownJobIds));
+      } catch (PartialJobsStatusException e) {
+        jobs.addAll(e.getJobs());
+        uncheckedJobIds.addAll(e.getUncheckedJobIds());
+      }
+    }
+
+    if (!uncheckedJobIds.isEmpty()) throw new PartialJobsStatusException(jobs, uncheckedJobIds);
+    return jobs;
+  }
+
+  @Override
+  public List<JobResponseDTO> checkStatusJobByName(String jobName) throws GetJobException {
+    List<JobResponseDTO> jobs = new ArrayList<JobResponseDTO>();
+    for (Arrebol endpoint : endpoints.values())
+      jobs.addAll(endpoint.checkStatusJobByName(jobName));
+    return jobs;
+  }
+
+  @Override
+  public String checkStatusJobString(String jobId) throws GetJobException {
+    Arrebol owner = owners.get(jobId);
+    if (owner != null) return owner.checkStatusJobString(jobId);
+
+    for (Arrebol endpoint : endpoints.values()) {
+      String job = endpoint.checkStatusJobString(jobId);
+      if (job != null) return job;
+    }
+    return null;
+  }
+
+  /** Sums the free slots of the endpoints with the queue. */
+  @Override
+  public int getCountSlotsInQueue(String queueId) throws GetCountsSlotsException {
+    int slots = 0;
+    for (Arrebol endpoint : endpoints.values()) {
+      if (endpoint instanceof DefaultArrebol
+          && queueId.equals(((DefaultArrebol) endpoint).getQueueId()))
+        slots += endpoint.getCountSlots();
+    }
+    return slots;
+  }
+
+  /** Sums the free slots of every endpoint that can be reached. */
+  @Override
+  public int getCountSlots() throws GetCountsSlotsException {
+    int slots = 0;
+    GetCountsSlotsException lastError = null;
+
+    for (Map.Entry<String, Arrebol> endpoint : endpoints.entrySet()) {
+      try {
+        slots += endpoint.getValue().getCountSlots();
+      } catch (GetCountsSlotsException e) {
+        LOGGER.warn("Ignoring slots of Arrebol endpoint [" + endpoint.getKey() + "]");
+        lastError = e;
+      }
+    }
+
+    if (lastError != null && slots == 0) throw lastError;
+    return slots;
+  }
+
+  @Override
+  public void close() {
+    for (Arrebol endpoint : endpoints.values()) endpoint.close();
+  }
+
+  /**
+   * This function finds the owners of the jobs not owned yet, asking the endpoints in order for the
+   * jobs not found so far.
+   *
+   * @param jobIds ids of the jobs to be located
+   * @return status of the jobs located now (jobs not found are absent)
+   * @throws PartialJobsStatusException if some endpoints were skipped and jobs are still not
+   *     located, since they may be owned by the endpoints skipped
+   */
+  private List<JobStatus> locate(List<String> jobIds) {
+    List<String> remaining = new ArrayList<String>();
+    for (String jobId : jobIds) if (!owners.containsKey(jobId)) remaining.add(jobId);
+
+    List<JobStatus> located = new ArrayList<JobStatus>();
+    boolean skipped = false;
+    for (Arrebol endpoint : endpoints.values()) {
+      if (remaining.isEmpty()) break;
+
+      List<JobStatus> found = checkStatus(endpoint, remaining);
+      if (found == null) {
+        skipped = true;
+        continue;
+      }
+
+      for (JobStatus job : found) {
+        owners.putIfAbsent(job.getId(), endpoint);
+        remaining.remove(job.getId());
+        located.add(job);
+      }
+    }
+
+    if (!remaining.isEmpty()) {
+      if (skipped) throw new PartialJobsStatusException(located, remaining);
+      LOGGER.info("Jobs " + remaining + " were not found in any Arrebol endpoint");
+    }
+
+    return located;
+  }
+
+  /** Jobs that cannot be located now are located again when they are checked. */
+  private void tryToLocate(List<String> jobIds) {
+    try {
+      locate(jobIds);
+    } catch (PartialJobsStatusException e) {
+      LOGGER.warn("Jobs " + e.getUncheckedJobIds() + " could not be located yet");
+    }
+  }
+
+  /**
+   * This function checks the status of jobs in an endpoint through its circuit breaker.
+   *
+   * @param endpoint Arrebol endpoint
+   * @param jobIds ids of the jobs to be checked
+   * @return status of the jobs found, or null if the endpoint failed or its circuit is open
+   */
+  private List<JobStatus> checkStatus(Arrebol endpoint, List<String> jobIds) {
+    CircuitBreaker breaker = breakers.get(endpoint);
+    if (!breaker.tryAcquire()) return null;
+
+    try {
+      List<JobStatus> jobs = endpoint.checkStatusJobsById(jobIds);
+      breaker.onSuccess();
+      return jobs;
+    } catch (GetJobException | RuntimeException e) {
+      breaker.onFailure();
+      LOGGER.warn(
+          "Could not check jobs in Arrebol endpoint ["
+              + getName(endpoint)
+              + "]: "
+              + e.getMessage());
+      return null;
+    }
+  }
+
+  private String getName(Arrebol endpoint) {
+    for (Map.Entry<String, Arrebol> entry : endpoints.entrySet())
+      if (entry.getValue() == endpoint) return entry.getKey();
+    return null;
+  }
+
+  private Arrebol getOwnerOrFirst(String jobId) {
+    Arrebol owner = owners.get(jobId);
+    return owner != null ? owner : endpoints.values().iterator().next();
+  }
+}
@@ -4,10 +4,22 @@ package saps.scheduler.core.arrebol;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
@@ -20,20 +32,59 @@ import saps.scheduler.core.arrebol.exceptions.GetCountsSlotsException;
 import saps.scheduler.core.arrebol.exceptions.GetJobException;
 import saps.scheduler.core.arrebol.exceptions.SubmitJobException;
 import saps.scheduler.core.arrebol.http.HttpWrapper;
+import saps.scheduler.core.metrics.Histogram;
+import saps.scheduler.core.metrics.SchedulerMetrics;
 
 
 public class ArrebolRequestsHelper {
 
-  private final Properties properties;
+  public static final String DEFAULT_QUEUE_ID = "default";
+
   private final String arrebolBaseUrl;
+  private final String queueId;
+  private final HttpWrapper httpWrapper;
   private final Gson gson;
+  private final Histogram submitJobDuration;
+  private final Histogram getJobDuration;
+  private final Histogram getJobsDuration;
+  private final Histogram countSlotsDuration;
 
   private static final Logger LOGGER = Logger.getLogger(ArrebolRequestsHelper.class);
 
-  public ArrebolRequestsHelper(Properties properties) {
-    this.properties = properties;
-    this.arrebolBaseUrl = this.properties.getProperty(SapsPropertiesConstants.ARREBOL_BASE_URL);
+  public ArrebolRequestsHelper(Properties properties, HttpWrapper httpWrapper) {
+    this(
+        properties.getProperty(SapsPropertiesConstants.ARREBOL_BASE_URL),
+        DEFAULT_QUEUE_ID,
+        httpWrapper);
+  }
+
+  /**
+   * @param arrebolBaseUrl base URL of the Arrebol service
+   * @param queueId queue where the jobs are submitted and looked up
+   * @param httpWrapper HTTP transport to the Arrebol service
+   */
+  public ArrebolRequestsHelper(String arrebolBaseUrl, String queueId, HttpWrapper httpWrapper) {
+    this.arrebolBaseUrl = arrebolBaseUrl;
+    this.queueId = queueId;
+    this.httpWrapper = httpWrapper;
     this.gson = new GsonBuilder().create();
+    this.submitJobDuration = SchedulerMetrics.ARREBOL_REQUEST_DURATION.labels("submit_job");
+    this.getJobDuration = SchedulerMetrics.ARREBOL_REQUEST_DURATION.labels("get_job");
+    this.getJobsDuration = SchedulerMetrics.ARREBOL_REQUEST_DURATION.labels("get_jobs");
+    this.countSlotsDuration = SchedulerMetrics.ARREBOL_REQUEST_DURATION.labels("count_slots");
+  }
+
+  public String getQueueId() {
+    return queueId;
+  }
+
+  /** This function closes the HTTP transport of the requests. */
+  public void close() throws IOException {
+    httpWrapper.close();
+  }
+
+  private String getJobsEndpoint() {
+    return this.arrebolBaseUrl + "/queues/" + queueId + "/jobs";
   }
 
   public String submitJobToExecution(SapsJob job) throws Exception, SubmitJobException {
@@ -45,21 +96,27 @@ public class ArrebolRequestsHelper {
       throw new Exception("Job is not well formed to built JSON.");
     }
 
-    final String jobEndpoint = this.arrebolBaseUrl + "/queues/default/jobs";
+    final String jobEndpoint = getJobsEndpoint();
 
     String jobIdArrebol;
     final String JSON_KEY_JOB_ID_ARREBOL = "id";
 
+    long start = System.nanoTime();
     try {
-      final String jsonResponse =
-          HttpWrapper.doRequest(
-              HttpPost.METHOD_NAME, jobEndpoint, new LinkedList<Header>(), requestBody);
+      final String jsonResponse;
+      try {
+        jsonResponse =
+            httpWrapper.doRequest(
+                HttpPost.METHOD_NAME, jobEndpoint, new LinkedList<Header>(), requestBody);
+      } finally {
+        submitJobDuration.observeSince(start);
+      }
 
       JsonObject jobResponse = this.gson.fromJson(jsonResponse, JsonObject.class);
 
       jobIdArrebol = jobResponse.get(JSON_KEY_JOB_ID_ARREBOL).getAsString();
 
-      LOGGER.info("Job was submitted with success to Arrebol.");
+      LOGGER.debug("Job was submitted with success to Arrebol.");
 
     } catch (Exception e) {
       throw new SubmitJobException("Submit Job to Arrebol has FAILED: " + e.getMessage(), e);
@@ -68,31 +125,148 @@ public class ArrebolRequestsHelper {
     return jobIdArrebol;
   }
 
+  /** @return job information, or null if Arrebol does not know the job */
   public JobResponseDTO getJob(String jobArrebolId) throws GetJobException {
     return this.gson.fromJson(getJobJSON(jobArrebolId), JobResponseDTO.class);
   }
 
+  /** @return job information as JSON, or null if Arrebol does not know the job */
   public String getJobJSON(String jobArrebolId) throws GetJobException {
-    final String endpoint = this.arrebolBaseUrl + "/queues/default/jobs/" + jobArrebolId;
+    final String endpoint = getJobsEndpoint() + "/" + jobArrebolId;
 
     String jsonResponse;
+    long start = System.nanoTime();
     try {
-      jsonResponse = HttpWrapper.doRequest(HttpGet.METHOD_NAME, endpoint, null);
+      jsonResponse = httpWrapper.doRequest(HttpGet.METHOD_NAME, endpoint, null);
+    } catch (HttpResponseException e) {
+      if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+        LOGGER.info("Job [" + jobArrebolId + "] was not found in Arrebol");
+        return null;
+      }
+      throw new GetJobException("Get Job from Arrebol has FAILED: " + e.getMessage(), e);
     } catch (Exception e) {
       throw new GetJobException("Get Job from Arrebol has FAILED: " + e.getMessage(), e);
+    } finally {
+      getJobDuration.observeSince(start);
     }
 
     return jsonResponse;
   }
 
-  public StringEntity makeJSONBody(SapsJob job) throws UnsupportedEncodingException {
-    LOGGER.info("Building JSON body of Job ...");
+  /**
+   * This function gets the status of a job, parsing only the fields needed to follow it.
+   *
+   * @return job status, or null if Arrebol does not know the job
+   */
+  public JobStatus getJobStatus(String jobArrebolId) throws GetJobException {
+    final String endpoint = getJobsEndpoint() + "/" + jobArrebolId;
+
+    long start = System.nanoTime();
+    try {
+      return httpWrapper.doStreamingRequest(
+          HttpGet.METHOD_NAME,
+          endpoint,
+          null,
+          new HttpWrapper.EntityParser<JobStatus>() {
+            @Override
+            public JobStatus parse(InputStream content) throws IOException {
+              return JobStatusParser.parseJob(newJsonReader(content));
+            }
+          });
+    } catch (HttpResponseException e) {
+      if (e.getStatusCode() == HttpStatus.SC_NOT_FOUND) {
+        LOGGER.info("Job [" + jobArrebolId + "] was not found in Arrebol");
+        return null;
+      }
+      throw new GetJobException("Get Job from Arrebol has FAILED: " + e.getMessage(), e);
+    } catch (Exception e) {
+      throw new GetJobException("Get Job from Arrebol has FAILED: " + e.getMessage(), e);
+    } finally {
+      getJobDuration.observeSince(start);
+    }
+  }
 
-    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+  /**
+   * This function gets the status of many jobs in a single request, using the id filter of the
+   * queue job list.
+   *
+   * <p>A job absent from the list is not necessarily unknown to Arrebol, since the list may be
+   * paginated or leave finished jobs out, so only {@link #getJobStatus(String)} tells a job was
+   * not found.
+   *
+   * @param jobArrebolIds ids of the jobs to be returned
+   * @return status of the listed jobs, or null if Arrebol does not support filtering the job list
+   *     by id
+   */
+  public List<JobStatus> getJobsStatus(List<String> jobArrebolIds) throws GetJobException {
+    StringBuilder endpoint = new StringBuilder(getJobsEndpoint());
+    try {
+      for (int i = 0; i < jobArrebolIds.size(); i++) {
+        endpoint.append(i == 0 ? "?" : "&");
+        endpoint.append("id=").append(URLEncoder.encode(jobArrebolIds.get(i), "UTF-8"));
+      }
+    } catch (UnsupportedEncodingException e) {
+      throw new GetJobException("Get Jobs from Arrebol has FAILED: " + e.getMessage(), e);
+    }
+
+    List<JobStatus> jobs;
+    long start = System.nanoTime();
+    try {
+      jobs =
+          httpWrapper.doStreamingRequest(
+              HttpGet.METHOD_NAME,
+              endpoint.toString(),
+              null,
+              new HttpWrapper.EntityParser<List<JobStatus>>() {
+                @Override
+                public List<JobStatus> parse(InputStream content) throws IOException {
+                  JsonReader reader = newJsonReader(content);
+                  if (reader.peek() != JsonToken.BEGIN_ARRAY) return null;
+                  return JobStatusParser.parseJobs(reader);
+                }
+              });
+    } catch (HttpResponseException e) {
+      if (e.getStatusCode() >= HttpStatus.SC_BAD_REQUEST
+          && e.getStatusCode() < HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+        LOGGER.info("Arrebol does not support getting jobs by id in batch: " + e.getMessage());
+        return null;
+      }
+      throw new GetJobException("Get Jobs from Arrebol has FAILED: " + e.getMessage(), e);
+    } catch (Exception e) {
+      throw new GetJobException("Get Jobs from Arrebol has FAILED: " + e.getMessage(), e);
+    } finally {
+      getJobsDuration.observeSince(start);
+    }
+
+    if (jobs == null) {
+      LOGGER.info("Arrebol does not support getting jobs by id in batch: response is not a list");
+      return null;
+    }
+
+    // An Arrebol that ignores the filter returns other jobs of the queue, and maybe not all of them
+    Set<String> askedIds = new HashSet<String>(jobArrebolIds);
+    for (JobStatus job : jobs) {
+      if (!askedIds.contains(job.getId())) {
+        LOGGER.info(
+            "Arrebol does not support getting jobs by id in batch: job ["
+                + job.getId()
+                + "] was not asked for");
+        return null;
+      }
+    }
+
+    return jobs;
+  }
+
+  private static JsonReader newJsonReader(InputStream content) {
+    return new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+  }
+
+  public StringEntity makeJSONBody(SapsJob job) throws UnsupportedEncodingException {
     JobRequestDTO jobDTO = new JobRequestDTO(job);
-    String json = gson.toJson(jobDTO);
+    String json = this.gson.toJson(jobDTO);
 
-    LOGGER.info("JSON body: " + json);
+    LOGGER.debug("JSON body: " + json);
 
     return new StringEntity(json);
   }
@@ -102,8 +276,14 @@ public class ArrebolRequestsHelper {
     final String JSON_KEY_WAITING_JOBS_ARREBOL = "waiting_jobs";
 
     int waitingJobs;
+    long start = System.nanoTime();
     try {
-      final String jsonResponse = HttpWrapper.doRequest(HttpGet.METHOD_NAME, endpoint, null);
+      final String jsonResponse;
+      try {
+        jsonResponse = httpWrapper.doRequest(HttpGet.METHOD_NAME, endpoint, null);
+      } finally {
+        countSlotsDuration.observeSince(start);
+      }
       JsonObject jobResponse = this.gson.fromJson(jsonResponse, JsonObject.class);
       waitingJobs = jobResponse.get(JSON_KEY_WAITING_JOBS_ARREBOL).getAsInt();
 
@@ -2,54 +2,173 @@
 package saps.scheduler.core.arrebol;
 
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import org.apache.log4j.Logger;
 import saps.common.core.dto.JobResponseDTO;
 import saps.common.core.model.SapsJob;
+import saps.scheduler.core.SchedulerPropertiesConstants;
+import saps.scheduler.core.SchedulerPropertiesUtil;
+import saps.scheduler.core.arrebol.exceptions.ArrebolUnavailableException;
 import saps.scheduler.core.arrebol.exceptions.GetCountsSlotsException;
 import saps.scheduler.core.arrebol.exceptions.GetJobException;
+import saps.scheduler.core.arrebol.exceptions.PartialJobsStatusException;
 import saps.scheduler.core.arrebol.exceptions.SubmitJobException;
 import saps.scheduler.core.arrebol.retry.ArrebolRetry;
+import saps.scheduler.core.arrebol.retry.CircuitBreaker;
+import saps.scheduler.core.arrebol.retry.CountSlotsRetry;
 import saps.scheduler.core.arrebol.retry.GetJobByIdRetry;
 import saps.scheduler.core.arrebol.retry.GetJobByNameRetry;
+import saps.scheduler.core.arrebol.retry.GetJobsByIdRetry;
 import saps.scheduler.core.arrebol.retry.LenQueueRetry;
+import saps.scheduler.core.arrebol.retry.RetryPolicy;
 import saps.scheduler.core.arrebol.retry.SubmitJobRetry;
+import saps.scheduler.core.metrics.SchedulerMetrics;
 
 public class ArrebolUtils {
 
   public static final Logger LOGGER = Logger.getLogger(ArrebolUtils.class);
-  private static final int ARREBOL_DEFAULT_SLEEP_SECONDS = 5;
+
+  private static final long DEFAULT_RETRY_BASE_DELAY_MILLIS = 1000;
+  private static final long DEFAULT_RETRY_MAX_DELAY_MILLIS = 30000;
+  private static final long DEFAULT_READ_DEADLINE_SECONDS = 60;
+  private static final long DEFAULT_SUBMIT_DEADLINE_SECONDS = 120;
+  private static final int DEFAULT_CIRCUIT_FAILURE_THRESHOLD = 5;
+  private static final long DEFAULT_CIRCUIT_OPEN_SECONDS = 30;
+
+  private static volatile RetryPolicy readPolicy =
+      new RetryPolicy(
+          DEFAULT_RETRY_BASE_DELAY_MILLIS,
+          DEFAULT_RETRY_MAX_DELAY_MILLIS,
+          TimeUnit.SECONDS.toMillis(DEFAULT_READ_DEADLINE_SECONDS));
+  private static volatile RetryPolicy submitPolicy =
+      new RetryPolicy(
+          DEFAULT_RETRY_BASE_DELAY_MILLIS,
+          DEFAULT_RETRY_MAX_DELAY_MILLIS,
+          TimeUnit.SECONDS.toMillis(DEFAULT_SUBMIT_DEADLINE_SECONDS));
+  private static volatile CircuitBreaker circuitBreaker =
+      new CircuitBreaker(
+          DEFAULT_CIRCUIT_FAILURE_THRESHOLD,
+          TimeUnit.SECONDS.toMillis(DEFAULT_CIRCUIT_OPEN_SECONDS));
+
+  /**
+   * This function configures the retries of the Arrebol calls. Properties not set keep their
+   * default values.
+   *
+   * @param properties Scheduler properties
+   */
+  public static void configure(Properties properties) {
+    long baseDelay =
+        SchedulerPropertiesUtil.getLong(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_RETRY_BASE_DELAY,
+            DEFAULT_RETRY_BASE_DELAY_MILLIS);
+    long maxDelay =
+        SchedulerPropertiesUtil.getLong(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_RETRY_MAX_DELAY,
+            DEFAULT_RETRY_MAX_DELAY_MILLIS);
+    long readDeadline =
+        SchedulerPropertiesUtil.getLong(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_READ_DEADLINE,
+            DEFAULT_READ_DEADLINE_SECONDS);
+    long submitDeadline =
+        SchedulerPropertiesUtil.getLong(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_SUBMIT_DEADLINE,
+            DEFAULT_SUBMIT_DEADLINE_SECONDS);
+
+    readPolicy = new RetryPolicy(baseDelay, maxDelay, TimeUnit.SECONDS.toMillis(readDeadline));
+    submitPolicy = new RetryPolicy(baseDelay, maxDelay, TimeUnit.SECONDS.toMillis(submitDeadline));
+    circuitBreaker = createCircuitBreaker(properties);
+  }
+
+  /**
+   * This function creates a circuit breaker for calls to Arrebol, as set in the properties.
+   *
+   * @param properties Scheduler properties
+   * @return closed circuit breaker
+   */
+  public static CircuitBreaker createCircuitBreaker(Properties properties) {
+    int failureThreshold =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_CIRCUIT_FAILURE_THRESHOLD,
+            DEFAULT_CIRCUIT_FAILURE_THRESHOLD);
+    long openTime =
+        SchedulerPropertiesUtil.getLong(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_CIRCUIT_OPEN_TIME,
+            DEFAULT_CIRCUIT_OPEN_SECONDS);
+
+    return new CircuitBreaker(failureThreshold, TimeUnit.SECONDS.toMillis(openTime));
+  }
+
+  /** @return false while the calls to Arrebol are failing fast */
+  public static boolean isAvailable() {
+    return !circuitBreaker.isOpen();
+  }
 
   /**
-   * This function tries countless times to successfully execute the passed function.
+   * This function tries to successfully execute the passed function, waiting longer after each
+   * failure, until the policy deadline. It fails fast while the Arrebol circuit is open. A partial
+   * result is not retried, and does not count as a failure, since the endpoints that failed are
+   * tracked by their own circuit breakers.
    *
    * @param <T> Return type
    * @param function Function passed for execute
-   * @param sleepInSeconds Time sleep in seconds (case fail)
+   * @param policy Delays between attempts and deadline
+   * @param operation Name of the Arrebol operation in the metrics
    * @param message Information message about function passed
    * @return Function return
+   * @throws ArrebolUnavailableException if the deadline passes, the circuit is open or the thread
+   *     is interrupted
    */
   @SuppressWarnings("unchecked")
-  private static <T> T retry(ArrebolRetry<?> function, int sleepInSeconds, String message) {
-    LOGGER.info(
-        "[Retry Arrebol function] Trying "
-            + message
-            + " using "
-            + sleepInSeconds
-            + " seconds with time sleep");
-
-    while (true) {
+  private static <T> T retry(
+      ArrebolRetry<?> function, RetryPolicy policy, String operation, String message) {
+    CircuitBreaker breaker = circuitBreaker;
+    long deadline =
+        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getDeadlineMillis());
+
+    if (LOGGER.isDebugEnabled())
+      LOGGER.debug(
+          "[Retry Arrebol function] Trying "
+              + message
+              + " for up to "
+              + policy.getDeadlineMillis()
+              + " milliseconds");
+
+    for (int attempt = 0; ; attempt++) {
+      if (!breaker.tryAcquire())
+        throw new ArrebolUnavailableException(
+            "Arrebol circuit is open, giving up " + message + " after " + attempt + " attempts");
+
       try {
-        return (T) function.run();
+        T result = (T) function.run();
+        breaker.onSuccess();
+        return result;
+      } catch (PartialJobsStatusException e) {
+        breaker.onSuccess();
+        throw e;
       } catch (Exception | SubmitJobException | GetJobException | GetCountsSlotsException e) {
-        LOGGER.error("Failed while " + message);
-        e.printStackTrace();
+        breaker.onFailure();
+        LOGGER.error("Failed while " + message, e);
       }
 
+      long delay = policy.getDelayMillis(attempt);
+      if (TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()) < delay)
+        throw new ArrebolUnavailableException(
+            "Deadline exceeded, giving up " + message + " after " + (attempt + 1) + " attempts");
+
+      SchedulerMetrics.ARREBOL_RETRIES.labels(operation).inc();
       try {
-        LOGGER.info("Sleeping for " + sleepInSeconds + " seconds");
-        Thread.sleep(Long.valueOf(sleepInSeconds) * 1000);
+        LOGGER.info("Sleeping for " + delay + " milliseconds");
+        Thread.sleep(delay);
       } catch (InterruptedException e) {
-        e.printStackTrace();
+        Thread.currentThread().interrupt();
+        throw new ArrebolUnavailableException("Interrupted while " + message, e);
       }
     }
   }
@@ -64,10 +183,25 @@ public class ArrebolUtils {
   public static int getCountSlots(Arrebol arrebol, String queueId) {
     return retry(
         new LenQueueRetry(arrebol, queueId),
-        ARREBOL_DEFAULT_SLEEP_SECONDS,
+        readPolicy,
+        "count_slots",
         "gets Arrebol capacity len for add news jobs in queue id [" + queueId + "]");
   }
 
+  /**
+   * This function gets Arrebol capacity for add new jobs, whatever the queues they go to.
+   *
+   * @param arrebol Arrebol service
+   * @return Arrebol capacity
+   */
+  public static int getCountSlots(Arrebol arrebol) {
+    return retry(
+        new CountSlotsRetry(arrebol),
+        readPolicy,
+        "count_slots",
+        "gets Arrebol capacity len for add news jobs");
+  }
+
   /**
    * This function gets job list in Arrebol that matching with name.
    *
@@ -77,7 +211,8 @@ public class ArrebolUtils {
    * @return job response list that matching with label
    */
   public static List<JobResponseDTO> getJobByName(Arrebol arrebol, String jobName, String message) {
-    return retry(new GetJobByNameRetry(arrebol, jobName), ARREBOL_DEFAULT_SLEEP_SECONDS, message);
+    return retry(
+        new GetJobByNameRetry(arrebol, jobName), readPolicy, "get_job_by_name", message);
   }
 
   /**
@@ -89,7 +224,21 @@ public class ArrebolUtils {
    * @return job response that matching with id
    */
   public static JobResponseDTO getJobById(Arrebol arrebol, String jobId, String message) {
-    return retry(new GetJobByIdRetry(arrebol, jobId), ARREBOL_DEFAULT_SLEEP_SECONDS, message);
+    return retry(new GetJobByIdRetry(arrebol, jobId), readPolicy, "get_job", message);
+  }
+
+  /**
+   * This function gets jobs in Arrebol that matching with ids.
+   *
+   * @param Arrebol service
+   * @param jobIds job ids to be used for matching
+   * @param message information message
+   * @return status of the jobs that matching with ids (jobs not found are absent)
+   * @throws PartialJobsStatusException if the status of some jobs could not be checked
+   */
+  public static List<JobStatus> getJobsById(
+      Arrebol arrebol, List<String> jobIds, String message) {
+    return retry(new GetJobsByIdRetry(arrebol, jobIds), readPolicy, "get_jobs", message);
   }
 
   /**
@@ -101,7 +250,7 @@ public class ArrebolUtils {
    * @return job id returned from Arrebol
    */
   public static String submitJob(Arrebol arrebol, SapsJob imageJob, String message) {
-    return retry(new SubmitJobRetry(arrebol, imageJob), ARREBOL_DEFAULT_SLEEP_SECONDS, message);
+    return retry(new SubmitJobRetry(arrebol, imageJob), submitPolicy, "submit_job", message);
   }
 
 }
@@ -0,0 +1,88 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Local estimate of the free slots in an Arrebol queue, so the scheduler does not ask Arrebol for
+ * its queue length on every cycle. The estimate goes down when a job is submitted and up when a
+ * submitted job leaves the list, and is re-synchronized with the waiting jobs reported by Arrebol
+ * every {@code resyncPeriod} or after {@code maxDrift} local adjustments, whichever comes first.
+ */
+public class CapacityTracker {
+
+  private static final Logger LOGGER = Logger.getLogger(CapacityTracker.class);
+
+  private final int maxWaitingJobs;
+  private final long resyncPeriodNanos;
+  private final int maxDrift;
+
+  private int freeSlots;
+  private int adjustments;
+  private long lastSync;
+  private boolean synced;
+
+  /**
+   * @param maxWaitingJobs max number of jobs waiting in the queue
+   * @param resyncPeriodMillis max time between two synchronizations with Arrebol
+   * @param maxDrift max number of local adjustments between two synchronizations with Arrebol
+   */
+  public CapacityTracker(int maxWaitingJobs, long resyncPeriodMillis, int maxDrift) {
+    if (maxWaitingJobs <= 0 || resyncPeriodMillis <= 0 || maxDrift <= 0)
+      throw new IllegalArgumentException(
+          "Max waiting jobs, resync period and max drift must be positive");
+
+    this.maxWaitingJobs = maxWaitingJobs;
+    this.resyncPeriodNanos = TimeUnit.MILLISECONDS.toNanos(resyncPeriodMillis);
+    this.maxDrift = maxDrift;
+  }
+
+  /** @return true if the estimate must be synchronized with Arrebol before being used */
+  public synchronized boolean needsResync() {
+    return !synced || adjustments >= maxDrift || System.nanoTime() - lastSync >= resyncPeriodNanos;
+  }
+
+  /**
+   * This function replaces the estimate by the queue state reported by Arrebol.
+   *
+   * @param waitingJobs number of jobs waiting in the queue
+   */
+  public synchronized void resync(int waitingJobs) {
+    int actualFreeSlots = Math.max(0, maxWaitingJobs - waitingJobs);
+
+    if (synced && actualFreeSlots != freeSlots)
+      LOGGER.info(
+          "Arrebol capacity estimate drifted by "
+              + (actualFreeSlots - freeSlots)
+              + " slots after "
+              + adjustments
+              + " local adjustments");
+
+    freeSlots = actualFreeSlots;
+    adjustments = 0;
+    lastSync = System.nanoTime();
+    synced = true;
+  }
+
+  /** @return estimated number of jobs that can still be submitted to the queue */
+  public synchronized int getFreeSlots() {
+    return Math.max(0, freeSlots);
+  }
+
+  /** This function takes a slot for a job just submitted. */
+  public synchronized void reserve() {
+    freeSlots--;
+    adjustments++;
+  }
+
+  /** This function gives back a slot of a job that left the submitted job list. */
+  public synchronized void release() {
+    if (freeSlots < maxWaitingJobs) freeSlots++;
+    adjustments++;
+  }
+
+  public int getMaxWaitingJobs() {
+    return maxWaitingJobs;
+  }
+}
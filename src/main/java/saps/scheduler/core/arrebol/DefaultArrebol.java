@@ -1,55 +1,132 @@
 /* (C)2020 */
 package saps.scheduler.core.arrebol;
 
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.log4j.Logger;
 import saps.common.core.dto.JobResponseDTO;
 import saps.common.core.model.SapsImage;
 import saps.common.core.model.SapsJob;
+import saps.scheduler.core.SchedulerPropertiesConstants;
+import saps.scheduler.core.SchedulerPropertiesUtil;
 import saps.scheduler.core.arrebol.exceptions.GetCountsSlotsException;
 import saps.scheduler.core.arrebol.exceptions.GetJobException;
 import saps.scheduler.core.arrebol.exceptions.SubmitJobException;
+import saps.scheduler.core.arrebol.http.HttpWrapper;
 
 public class DefaultArrebol implements Arrebol {
 
-  private static final int ARREBOL_MAX_WAITING_JOBS = 20;
+  private static final Logger LOGGER = Logger.getLogger(DefaultArrebol.class);
+
+  private static final int DEFAULT_MAX_WAITING_JOBS = 20;
+  private static final long DEFAULT_CAPACITY_RESYNC_PERIOD_SECONDS = 300;
 
   private final ArrebolRequestsHelper arrebolRequestHelper;
 
-  private List<JobSubmitted> submittedJobID;
+  private final SubmittedJobRegistry submittedJobs;
+
+  private final AtomicBoolean batchStatusSupported;
+
+  private final CapacityTracker capacity;
 
   public DefaultArrebol(Properties properties) {
- 
-    this.arrebolRequestHelper = new ArrebolRequestsHelper(properties);
-    this.submittedJobID = new LinkedList<JobSubmitted>();
+    this(properties, new HttpWrapper(properties));
+  }
+
+  public DefaultArrebol(Properties properties, HttpWrapper httpWrapper) {
+    this(properties, new ArrebolRequestsHelper(properties, httpWrapper));
+  }
+
+  /**
+   * @param properties Scheduler properties
+   * @param arrebolBaseUrl base URL of the Arrebol service
+   * @param queueId queue where the jobs are submitted
+   * @param httpWrapper HTTP transport to the Arrebol service
+   */
+  public DefaultArrebol(
+      Properties properties, String arrebolBaseUrl, String queueId, HttpWrapper httpWrapper) {
+    this(properties, new ArrebolRequestsHelper(arrebolBaseUrl, queueId, httpWrapper));
+  }
+
+  private DefaultArrebol(Properties properties, ArrebolRequestsHelper arrebolRequestHelper) {
+    this.arrebolRequestHelper = arrebolRequestHelper;
+    this.submittedJobs = new SubmittedJobRegistry();
+    this.batchStatusSupported = new AtomicBoolean(true);
+
+    int maxWaitingJobs =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_MAX_WAITING_JOBS,
+            DEFAULT_MAX_WAITING_JOBS);
+    long resyncPeriod =
+        SchedulerPropertiesUtil.getLong(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_CAPACITY_RESYNC_PERIOD,
+            DEFAULT_CAPACITY_RESYNC_PERIOD_SECONDS);
+    int maxDrift =
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties, SchedulerPropertiesConstants.ARREBOL_CAPACITY_MAX_DRIFT, maxWaitingJobs);
+    this.capacity =
+        new CapacityTracker(maxWaitingJobs, TimeUnit.SECONDS.toMillis(resyncPeriod), maxDrift);
   }
 
   @Override
   public String addJob(SapsJob job) throws Exception, SubmitJobException {
-    return arrebolRequestHelper.submitJobToExecution(job);
+    String jobId = arrebolRequestHelper.submitJobToExecution(job);
+    capacity.reserve();
+    return jobId;
   }
 
   @Override
-  public void removeJob(JobSubmitted job) {
-    submittedJobID.remove(job);
+  public boolean removeJob(JobSubmitted job) {
+    if (!submittedJobs.remove(job)) return false;
+
+    capacity.release();
+    return true;
   }
 
+  /** Adding a job already in the list has no effect. */
   @Override
   public void addJobInList(JobSubmitted newJob) {
-    submittedJobID.add(newJob);
+    submittedJobs.add(newJob);
+  }
+
+  @Override
+  public JobSubmitted getJobSubmitted(String jobId) {
+    return submittedJobs.getByJobId(jobId);
   }
 
+  /**
+   * The tasks were last updated in the Catalog when their jobs were submitted, so that is taken as
+   * the submission time of the jobs.
+   */
   @Override
   public void populateJobList(List<SapsImage> taskList) {
-    for (SapsImage task : taskList)
-      submittedJobID.add(new JobSubmitted(task.getArrebolJobId(), task));
+    long now = System.currentTimeMillis();
+    for (SapsImage task : taskList) {
+      long submittedAt = task.getUpdateTime() == null ? now : task.getUpdateTime().getTime();
+      submittedJobs.add(new JobSubmitted(task.getArrebolJobId(), task, submittedAt));
+    }
   }
 
+  /**
+   * Returns a snapshot of the submitted jobs, since the checker iterates over it while the
+   * submission pipeline may be adding new jobs.
+   */
   @Override
   public List<JobSubmitted> returnAllJobsSubmitted() {
-    return submittedJobID;
+    return submittedJobs.snapshot();
+  }
+
+  @Override
+  public int countJobsSubmitted() {
+    return submittedJobs.size();
   }
 
   @Override
@@ -57,6 +134,36 @@ public class DefaultArrebol implements Arrebol {
     return arrebolRequestHelper.getJob(jobId);
   }
 
+  /**
+   * Uses the id filter of the queue job list while Arrebol supports it. Once Arrebol answers that
+   * it does not, falls back to one request per job, reusing the pooled connections. The jobs left
+   * out of a list are looked up one by one as well, so a job is only missing from the result when
+   * Arrebol answers it was not found.
+   */
+  @Override
+  public List<JobStatus> checkStatusJobsById(List<String> jobIds) throws GetJobException {
+    List<JobStatus> jobs = null;
+    if (batchStatusSupported.get()) {
+      jobs = arrebolRequestHelper.getJobsStatus(jobIds);
+      if (jobs == null) {
+        LOGGER.info("Falling back to one request per job to check the status of jobs");
+        batchStatusSupported.set(false);
+      }
+    }
+    if (jobs == null) jobs = new ArrayList<JobStatus>(jobIds.size());
+
+    Set<String> listedIds = new HashSet<String>();
+    for (JobStatus job : jobs) listedIds.add(job.getId());
+
+    for (String jobId : jobIds) {
+      if (listedIds.contains(jobId)) continue;
+
+      JobStatus job = arrebolRequestHelper.getJobStatus(jobId);
+      if (job != null) jobs.add(job);
+    }
+    return jobs;
+  }
+
   public List<JobResponseDTO> checkStatusJobByName(String JobName) throws GetJobException {
     List<JobResponseDTO> emptyList = new ArrayList<>();
     return emptyList;
@@ -67,8 +174,41 @@ public class DefaultArrebol implements Arrebol {
     return arrebolRequestHelper.getJobJSON(jobId);
   }
 
+  /**
+   * Answers from the local capacity estimate for the queue where the jobs are submitted, and from
+   * Arrebol for any other queue.
+   */
   @Override
   public int getCountSlotsInQueue(String queueId) throws GetCountsSlotsException {
-    return ARREBOL_MAX_WAITING_JOBS - arrebolRequestHelper.getCountSlotsInQueue(queueId);
+    if (queueId.equals(arrebolRequestHelper.getQueueId())) return getCountSlots();
+
+    return Math.max(
+        0, capacity.getMaxWaitingJobs() - arrebolRequestHelper.getCountSlotsInQueue(queueId));
+  }
+
+  /**
+   * Answers from the local capacity estimate, asking Arrebol for the queue length only when the
+   * estimate is due for a resync.
+   */
+  @Override
+  public int getCountSlots() throws GetCountsSlotsException {
+    if (capacity.needsResync())
+      capacity.resync(arrebolRequestHelper.getCountSlotsInQueue(arrebolRequestHelper.getQueueId()));
+
+    return capacity.getFreeSlots();
+  }
+
+  public String getQueueId() {
+    return arrebolRequestHelper.getQueueId();
+  }
+
+  /** Closes the HTTP transport, even if it is shared with other endpoints. */
+  @Override
+  public void close() {
+    try {
+      arrebolRequestHelper.close();
+    } catch (IOException e) {
+      LOGGER.warn("Error while closing HTTP transport to Arrebol", e);
+    }
   }
 }
@@ -0,0 +1,154 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import com.google.gson.stream.JsonReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import org.apache.log4j.Logger;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import saps.scheduler.core.metrics.Counter;
+import saps.scheduler.core.metrics.SchedulerMetrics;
+
+/**
+ * HTTP server receiving the notifications sent when an Arrebol job changes state, so a finished
+ * job is handled as soon as it finishes instead of on the next checker sweep. Each notification is
+ * a POST whose body is the job as Arrebol returns it when the job is looked up, and notifications
+ * without the token in the token query parameter are refused.
+ *
+ * <p>Only the job id is taken from the body. A notification is a hint that the job should be
+ * looked up now, never the source of its state, so a forged notification cannot finish a task.
+ *
+ * <p>Notifications may be lost or arrive before the job is listed as submitted, so the checker
+ * still sweeps the submitted jobs, only less often, to reconcile them.
+ */
+public class JobNotificationServer {
+
+  private static final Logger LOGGER = Logger.getLogger(JobNotificationServer.class);
+
+  private static final String TOKEN_PARAMETER = "token";
+
+  public interface Listener {
+
+    /**
+     * This function is called, in a server thread, for each valid notification.
+     *
+     * @param jobId id of the job notified
+     * @return true if the job is finished and its state transition was applied
+     */
+    public boolean onJobNotification(String jobId);
+  }
+
+  private final Server server;
+  private final byte[] token;
+  private final Listener listener;
+  private final Counter finished;
+  private final Counter ignored;
+  private final Counter refused;
+  private final Counter invalid;
+  private final Counter failed;
+
+  /**
+   * @param port port to listen on
+   * @param token token required in the notifications
+   * @param listener listener to be notified with each job id
+   * @throws IllegalArgumentException if the token is empty
+   */
+  public JobNotificationServer(int port, String token, Listener listener) {
+    if (token == null || token.isEmpty())
+      throw new IllegalArgumentException("Job notifications must require a token");
+
+    this.token = token.getBytes(StandardCharsets.UTF_8);
+    this.listener = listener;
+    this.finished = SchedulerMetrics.JOB_NOTIFICATIONS.labels("finished");
+    this.ignored = SchedulerMetrics.JOB_NOTIFICATIONS.labels("ignored");
+    this.refused = SchedulerMetrics.JOB_NOTIFICATIONS.labels("refused");
+    this.invalid = SchedulerMetrics.JOB_NOTIFICATIONS.labels("invalid");
+    this.failed = SchedulerMetrics.JOB_NOTIFICATIONS.labels("failed");
+    this.server =
+        new Server(
+            Protocol.HTTP,
+            port,
+            new Restlet() {
+              @Override
+              public void handle(Request request, Response response) {
+                JobNotificationServer.this.handle(request, response);
+              }
+            });
+  }
+
+  public void start() throws Exception {
+    server.start();
+    LOGGER.info("Receiving job notifications on port " + server.getPort());
+  }
+
+  public void stop() {
+    try {
+      server.stop();
+    } catch (Exception e) {
+      LOGGER.error("Error while stopping job notification server", e);
+    }
+  }
+
+  private void handle(Request request, Response response) {
+    if (!Method.POST.equals(request.getMethod())) {
+      response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+      return;
+    }
+
+    if (!hasToken(request)) {
+      refused.inc();
+      response.setStatus(Status.CLIENT_ERROR_UNAUTHORIZED);
+      return;
+    }
+
+    String jobId = parseJobId(request.getEntityAsText());
+    if (jobId == null) {
+      invalid.inc();
+      response.setStatus(Status.CLIENT_ERROR_BAD_REQUEST, "Body is not an Arrebol job");
+      return;
+    }
+
+    try {
+      if (listener.onJobNotification(jobId)) {
+        finished.inc();
+        response.setStatus(Status.SUCCESS_OK);
+      } else {
+        ignored.inc();
+        response.setStatus(Status.SUCCESS_ACCEPTED);
+      }
+    } catch (Exception e) {
+      failed.inc();
+      LOGGER.error("Error while handling notification of job [" + jobId + "]", e);
+      response.setStatus(Status.SERVER_ERROR_INTERNAL);
+    }
+  }
+
+  private boolean hasToken(Request request) {
+    String requestToken =
+        request.getResourceRef().getQueryAsForm().getFirstValue(TOKEN_PARAMETER);
+    return requestToken != null
+        && MessageDigest.isEqual(token, requestToken.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** @return id of the job in the body, or null if the body is not a job with id */
+  private static String parseJobId(String body) {
+    if (body == null) return null;
+
+    JobStatus jobResponse;
+    try {
+      jobResponse = JobStatusParser.parseJob(new JsonReader(new StringReader(body)));
+    } catch (Exception e) {
+      LOGGER.debug("Job notification could not be parsed: " + body, e);
+      return null;
+    }
+
+    return jobResponse == null ? null : jobResponse.getId();
+  }
+}
@@ -0,0 +1,106 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Logger;
+import saps.scheduler.core.arrebol.exceptions.PartialJobsStatusException;
+
+/**
+ * Job responses fetched from Arrebol during a single checker sweep. A new cache must be created for
+ * each sweep, so a job is fetched at most once per sweep and never served stale across sweeps. Jobs
+ * not found in Arrebol are cached as well, while jobs whose status could not be checked are not.
+ */
+public class JobResponseCache {
+
+  private static final Logger LOGGER = Logger.getLogger(JobResponseCache.class);
+
+  private final Arrebol arrebol;
+  private final ConcurrentMap<String, CachedResponse> responses;
+  private final AtomicLong remoteCalls;
+
+  public JobResponseCache(Arrebol arrebol) {
+    this.arrebol = arrebol;
+    this.responses = new ConcurrentHashMap<String, CachedResponse>();
+    this.remoteCalls = new AtomicLong();
+  }
+
+  /**
+   * This function gets job in Arrebol that matching with id, unless it was already fetched in this
+   * sweep.
+   *
+   * @param jobId job id to be used for matching
+   * @param message information message
+   * @return job response that matching with id, or null if the job was not found or could not be
+   *     checked
+   */
+  public JobStatus getJobById(String jobId, String message) {
+    return getJobsById(Collections.singletonList(jobId), message).get(jobId);
+  }
+
+  /**
+   * This function gets jobs in Arrebol that matching with ids. Only the jobs not fetched yet in
+   * this sweep are requested, all together in a single batch.
+   *
+   * @param jobIds job ids to be used for matching
+   * @param message information message
+   * @return job response by job id, mapping to null the jobs not found and leaving out the jobs
+   *     whose status could not be checked
+   */
+  public Map<String, JobStatus> getJobsById(List<String> jobIds, String message) {
+    Map<String, JobStatus> jobResponses = new HashMap<String, JobStatus>();
+    List<String> missingJobIds = new ArrayList<String>();
+
+    for (String jobId : jobIds) {
+      CachedResponse cached = responses.get(jobId);
+
+      if (cached != null) jobResponses.put(jobId, cached.jobResponse);
+      else missingJobIds.add(jobId);
+    }
+
+    if (missingJobIds.isEmpty()) return jobResponses;
+
+    List<JobStatus> fetched;
+    Set<String> uncheckedJobIds = Collections.emptySet();
+    try {
+      fetched = ArrebolUtils.getJobsById(arrebol, missingJobIds, message);
+    } catch (PartialJobsStatusException e) {
+      LOGGER.warn(e.getMessage() + ", they are checked again in the next sweep");
+      fetched = e.getJobs();
+      uncheckedJobIds = new HashSet<String>(e.getUncheckedJobIds());
+    }
+    remoteCalls.incrementAndGet();
+
+    for (String jobId : missingJobIds)
+      if (!uncheckedJobIds.contains(jobId)) jobResponses.put(jobId, null);
+    for (JobStatus jobResponse : fetched) jobResponses.put(jobResponse.getId(), jobResponse);
+
+    for (String jobId : missingJobIds)
+      if (jobResponses.containsKey(jobId))
+        responses.putIfAbsent(jobId, new CachedResponse(jobResponses.get(jobId)));
+
+    return jobResponses;
+  }
+
+  /** @return number of requests made to Arrebol through this cache */
+  public long getRemoteCalls() {
+    return remoteCalls.get();
+  }
+
+  private static class CachedResponse {
+
+    private final JobStatus jobResponse;
+
+    CachedResponse(JobStatus jobResponse) {
+      this.jobResponse = jobResponse;
+    }
+  }
+}
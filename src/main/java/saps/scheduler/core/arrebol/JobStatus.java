@@ -0,0 +1,65 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The part of an Arrebol job the Scheduler needs to follow its execution: the job state and the
+ * state and exit code of each command. The full job can still be fetched as a {@link
+ * saps.common.core.dto.JobResponseDTO} through {@link Arrebol#checkStatusJobById(String)}.
+ */
+public class JobStatus {
+
+  private final String id;
+  private final String jobState;
+  private final List<CommandStatus> commands;
+
+  public JobStatus(String id, String jobState, List<CommandStatus> commands) {
+    this.id = id;
+    this.jobState = jobState;
+    this.commands = Collections.unmodifiableList(commands);
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getJobState() {
+    return jobState;
+  }
+
+  public List<CommandStatus> getCommands() {
+    return commands;
+  }
+
+  @Override
+  public String toString() {
+    return "JobStatus{id=" + id + ", jobState=" + jobState + ", commands=" + commands + "}";
+  }
+
+  public static class CommandStatus {
+
+    private final String state;
+    private final Integer exitCode;
+
+    public CommandStatus(String state, Integer exitCode) {
+      this.state = state;
+      this.exitCode = exitCode;
+    }
+
+    public String getState() {
+      return state;
+    }
+
+    /** @return command exit code, or null if Arrebol did not report one */
+    public Integer getExitCode() {
+      return exitCode;
+    }
+
+    @Override
+    public String toString() {
+      return state + "(" + exitCode + ")";
+    }
+  }
+}
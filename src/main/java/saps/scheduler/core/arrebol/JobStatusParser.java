@@ -0,0 +1,142 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser of Arrebol job responses. Only the fields in {@link JobStatus} are read, every
+ * other field (labels, requirements, command lines, metadata...) is skipped without being
+ * materialized.
+ */
+public class JobStatusParser {
+
+  private static final String JSON_KEY_ID = "id";
+  private static final String JSON_KEY_JOB_STATE = "job_state";
+  private static final String JSON_KEY_TASKS = "tasks";
+  private static final String JSON_KEY_TASK_SPEC = "task_spec";
+  private static final String JSON_KEY_COMMANDS = "commands";
+  private static final String JSON_KEY_STATE = "state";
+  private static final String JSON_KEY_EXIT_CODE = "exit_code";
+
+  /**
+   * This function reads a job object.
+   *
+   * @param reader reader positioned at the beginning of the job object
+   * @return job status, or null if the job is a JSON null
+   */
+  public static JobStatus parseJob(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+
+    String id = null;
+    String jobState = null;
+    List<JobStatus.CommandStatus> commands = new ArrayList<JobStatus.CommandStatus>();
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+
+      if (JSON_KEY_ID.equals(name)) id = nextStringOrNull(reader);
+      else if (JSON_KEY_JOB_STATE.equals(name)) jobState = nextStringOrNull(reader);
+      else if (JSON_KEY_TASKS.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY)
+        parseTasks(reader, commands);
+      else reader.skipValue();
+    }
+    reader.endObject();
+
+    return new JobStatus(id, jobState, commands);
+  }
+
+  /**
+   * This function reads a list of job objects.
+   *
+   * @param reader reader positioned at the beginning of the list
+   * @return status of the jobs in the list
+   * @throws IllegalStateException if the value is not a list
+   */
+  public static List<JobStatus> parseJobs(JsonReader reader) throws IOException {
+    List<JobStatus> jobs = new ArrayList<JobStatus>();
+
+    reader.beginArray();
+    while (reader.hasNext()) {
+      JobStatus job = parseJob(reader);
+      if (job != null) jobs.add(job);
+    }
+    reader.endArray();
+
+    return jobs;
+  }
+
+  private static void parseTasks(JsonReader reader, List<JobStatus.CommandStatus> commands)
+      throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue();
+        continue;
+      }
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if (JSON_KEY_TASK_SPEC.equals(reader.nextName())
+            && reader.peek() == JsonToken.BEGIN_OBJECT) parseTaskSpec(reader, commands);
+        else reader.skipValue();
+      }
+      reader.endObject();
+    }
+    reader.endArray();
+  }
+
+  private static void parseTaskSpec(JsonReader reader, List<JobStatus.CommandStatus> commands)
+      throws IOException {
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (JSON_KEY_COMMANDS.equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY)
+        parseCommands(reader, commands);
+      else reader.skipValue();
+    }
+    reader.endObject();
+  }
+
+  private static void parseCommands(JsonReader reader, List<JobStatus.CommandStatus> commands)
+      throws IOException {
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue();
+        continue;
+      }
+
+      String state = null;
+      Integer exitCode = null;
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+
+        if (JSON_KEY_STATE.equals(name)) state = nextStringOrNull(reader);
+        else if (JSON_KEY_EXIT_CODE.equals(name) && reader.peek() == JsonToken.NUMBER)
+          exitCode = reader.nextInt();
+        else reader.skipValue();
+      }
+      reader.endObject();
+
+      commands.add(new JobStatus.CommandStatus(state, exitCode));
+    }
+    reader.endArray();
+  }
+
+  private static String nextStringOrNull(JsonReader reader) throws IOException {
+    if (reader.peek() == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    return reader.nextString();
+  }
+}
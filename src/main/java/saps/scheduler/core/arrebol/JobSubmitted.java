@@ -1,18 +1,31 @@
 /* (C)2020 */
 package saps.scheduler.core.arrebol;
 
-import saps.common.core.model.SapsImage;
-
 import java.util.Objects;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
 
 public class JobSubmitted {
 
   private String jobId;
   private SapsImage imageTask;
+  private ImageTaskState phase;
+  private long submittedAt;
 
   public JobSubmitted(String jobId, SapsImage imageTask) {
+    this(jobId, imageTask, System.currentTimeMillis());
+  }
+
+  /**
+   * @param jobId job id in Arrebol
+   * @param imageTask task run by the job
+   * @param submittedAt time the job was submitted in milliseconds
+   */
+  public JobSubmitted(String jobId, SapsImage imageTask, long submittedAt) {
     this.jobId = jobId;
     this.imageTask = imageTask;
+    this.phase = imageTask.getState();
+    this.submittedAt = submittedAt;
   }
 
   public String getJobId() {
@@ -23,6 +36,19 @@ public class JobSubmitted {
     return imageTask;
   }
 
+  /**
+   * @return task state when the job was submitted, that is, the processing phase run by the job
+   *     (the task state changes when the job finishes)
+   */
+  public ImageTaskState getPhase() {
+    return phase;
+  }
+
+  /** @return time the job was submitted in milliseconds */
+  public long getSubmittedAt() {
+    return submittedAt;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) return true;
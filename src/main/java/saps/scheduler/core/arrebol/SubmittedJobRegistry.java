@@ -0,0 +1,55 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe registry of the jobs submitted to Arrebol, indexed by job id. Every operation is
+ * O(1), except snapshots, which copy the jobs so that callers can iterate while other threads add
+ * or remove jobs.
+ */
+public class SubmittedJobRegistry {
+
+  private final ConcurrentMap<String, JobSubmitted> jobsById;
+
+  public SubmittedJobRegistry() {
+    this.jobsById = new ConcurrentHashMap<String, JobSubmitted>();
+  }
+
+  /**
+   * This function adds a job, unless a job with the same id is already registered.
+   *
+   * @param job job to be added
+   * @return true if the job was added, false if it was already registered
+   */
+  public boolean add(JobSubmitted job) {
+    return jobsById.putIfAbsent(job.getJobId(), job) == null;
+  }
+
+  /**
+   * This function removes a job.
+   *
+   * @param job job to be removed
+   * @return true if the job was removed, false if it was not registered
+   */
+  public boolean remove(JobSubmitted job) {
+    return jobsById.remove(job.getJobId()) != null;
+  }
+
+  /** @return job with the id, or null if it is not registered */
+  public JobSubmitted getByJobId(String jobId) {
+    return jobsById.get(jobId);
+  }
+
+  /** @return copy of the registered jobs */
+  public List<JobSubmitted> snapshot() {
+    return new ArrayList<JobSubmitted>(jobsById.values());
+  }
+
+  public int size() {
+    return jobsById.size();
+  }
+}
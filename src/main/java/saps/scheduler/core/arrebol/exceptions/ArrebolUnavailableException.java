@@ -0,0 +1,20 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.exceptions;
+
+/**
+ * Thrown when a call to Arrebol is given up, either because its deadline passed or because Arrebol
+ * is considered unhealthy. The work that depends on Arrebol should be skipped and tried again in a
+ * later cycle.
+ */
+public class ArrebolUnavailableException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public ArrebolUnavailableException(String s) {
+    super(s);
+  }
+
+  public ArrebolUnavailableException(String s, Throwable e) {
+    super(s, e);
+  }
+}
@@ -0,0 +1,38 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.exceptions;
+
+import java.util.List;
+import saps.scheduler.core.arrebol.JobStatus;
+
+/**
+ * Thrown when the status of some jobs could not be checked because the Arrebol endpoints that may
+ * own them failed, while the other endpoints answered. The jobs not checked are not known to be
+ * lost, so they should be checked again later rather than handled as not found.
+ */
+public class PartialJobsStatusException extends ArrebolUnavailableException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final transient List<JobStatus> jobs;
+  private final transient List<String> uncheckedJobIds;
+
+  /**
+   * @param jobs status of the jobs checked, not including the jobs not found
+   * @param uncheckedJobIds ids of the jobs whose status could not be checked
+   */
+  public PartialJobsStatusException(List<JobStatus> jobs, List<String> uncheckedJobIds) {
+    super("Status of jobs " + uncheckedJobIds + " could not be checked");
+    this.jobs = jobs;
+    this.uncheckedJobIds = uncheckedJobIds;
+  }
+
+  /** @return status of the jobs checked, not including the jobs not found */
+  public List<JobStatus> getJobs() {
+    return jobs;
+  }
+
+  /** @return ids of the jobs whose status could not be checked */
+  public List<String> getUncheckedJobIds() {
+    return uncheckedJobIds;
+  }
+}
@@ -1,21 +1,38 @@
 /* (C)2020 */
 package saps.scheduler.core.arrebol.http;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import org.apache.http.Header;
-import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 import org.apache.log4j.Logger;
+import saps.scheduler.core.SchedulerPropertiesConstants;
+import saps.scheduler.core.SchedulerPropertiesUtil;
 
-public class HttpWrapper {
+/**
+ * Long-lived HTTP transport used to talk to Arrebol. Connections are pooled and kept alive between
+ * requests, and idle connections are evicted in background. A single instance should be shared by
+ * all requests to the same Arrebol service and closed on shutdown.
+ */
+public class HttpWrapper implements Closeable {
 
   private static final Logger LOGGER = Logger.getLogger(HttpWrapper.class);
 
@@ -25,54 +42,197 @@ public class HttpWrapper {
   private static final String APPLICATION_JSON = "application/json";
   private static final String CONTENT_TYPE = "Content-Type";
 
-  public static String doRequest(String method, String endpoint, List<Header> additionalHeaders)
+  private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10000;
+  private static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 60000;
+  private static final int DEFAULT_MAX_CONNECTIONS = 50;
+  private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+  private static final int DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS = 30;
+  private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+  private final PoolingHttpClientConnectionManager connectionManager;
+  private final CloseableHttpClient client;
+
+  public HttpWrapper(Properties properties) {
+    this(
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_HTTP_CONNECT_TIMEOUT,
+            DEFAULT_CONNECT_TIMEOUT_MILLIS),
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_HTTP_SOCKET_TIMEOUT,
+            DEFAULT_SOCKET_TIMEOUT_MILLIS),
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_HTTP_MAX_CONNECTIONS,
+            DEFAULT_MAX_CONNECTIONS),
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_HTTP_MAX_CONNECTIONS_PER_ROUTE,
+            DEFAULT_MAX_CONNECTIONS_PER_ROUTE),
+        SchedulerPropertiesUtil.getPositiveInt(
+            properties,
+            SchedulerPropertiesConstants.ARREBOL_HTTP_IDLE_CONNECTION_TIMEOUT,
+            DEFAULT_IDLE_CONNECTION_TIMEOUT_SECONDS));
+  }
+
+  /**
+   * @param connectTimeout timeout in milliseconds to establish a connection (and to lease one from
+   *     the pool)
+   * @param socketTimeout timeout in milliseconds waiting for data
+   * @param maxConnections max connections in the pool
+   * @param maxConnectionsPerRoute max connections in the pool to the same host
+   * @param idleConnectionTimeout time in seconds after which an idle connection is evicted
+   */
+  public HttpWrapper(
+      int connectTimeout,
+      int socketTimeout,
+      int maxConnections,
+      int maxConnectionsPerRoute,
+      int idleConnectionTimeout) {
+    this.connectionManager = new PoolingHttpClientConnectionManager();
+    this.connectionManager.setMaxTotal(maxConnections);
+    this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    this.connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+    RequestConfig requestConfig =
+        RequestConfig.custom()
+            .setConnectTimeout(connectTimeout)
+            .setConnectionRequestTimeout(connectTimeout)
+            .setSocketTimeout(socketTimeout)
+            .build();
+
+    this.client =
+        HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+            .evictExpiredConnections()
+            .evictIdleConnections(idleConnectionTimeout, TimeUnit.SECONDS)
+            .build();
+  }
+
+  /** Parser of a successful response body, read directly from the connection stream. */
+  public interface EntityParser<T> {
+
+    public T parse(InputStream content) throws IOException;
+  }
+
+  public String doRequest(String method, String endpoint, List<Header> additionalHeaders)
       throws Exception {
     return doRequest(method, endpoint, additionalHeaders, null);
   }
 
-  public static String doRequest(
+  /**
+   * This function executes a request and returns its body. The response is always consumed, so the
+   * connection goes back to the pool even when the request fails.
+   *
+   * @throws HttpResponseException if Arrebol answers with a client or server error status code
+   */
+  public String doRequest(
       String method, String endpoint, List<Header> additionalHeaders, StringEntity body)
       throws Exception {
+    HttpUriRequest request = buildRequest(method, endpoint, additionalHeaders, body);
+    return client.execute(request, new StringResponseHandler(request));
+  }
+
+  /**
+   * This function executes a request and parses its body while it is read from the connection,
+   * without buffering it. The response is always consumed, so the connection goes back to the pool
+   * even when the request or the parsing fails.
+   *
+   * @return parsed body, or null if the response is neither a success nor an error
+   * @throws HttpResponseException if Arrebol answers with a client or server error status code
+   */
+  public <T> T doStreamingRequest(
+      String method, String endpoint, List<Header> additionalHeaders, EntityParser<T> parser)
+      throws Exception {
+    HttpUriRequest request = buildRequest(method, endpoint, additionalHeaders, null);
+    return client.execute(request, new ParsingResponseHandler<T>(request, parser));
+  }
+
+  private static HttpUriRequest buildRequest(
+      String method, String endpoint, List<Header> additionalHeaders, StringEntity body) {
     HttpUriRequest request = instantiateRequest(method, endpoint, body);
 
-    if (request != null) {
-      request.setHeader(CONTENT_TYPE, APPLICATION_JSON);
-      if (additionalHeaders != null) {
-        for (Header header : additionalHeaders) {
-          request.setHeader(header.getName(), header.getValue());
-        }
+    if (request == null) {
+      throw new IllegalArgumentException("HTTP method [" + method + "] is not supported");
+    }
+
+    request.setHeader(CONTENT_TYPE, APPLICATION_JSON);
+    if (additionalHeaders != null) {
+      for (Header header : additionalHeaders) {
+        request.setHeader(header.getName(), header.getValue());
       }
     }
 
-    final HttpResponse response = HttpClients.createMinimal().execute(request);
+    return request;
+  }
 
-    return extractHttpEntity(response, request);
+  @Override
+  public void close() throws IOException {
+    client.close();
+    connectionManager.close();
   }
 
-  private static String extractHttpEntity(HttpResponse response, HttpUriRequest request) {
-    HttpEntity entity = null;
+  private static class StringResponseHandler implements ResponseHandler<String> {
+
+    private final HttpUriRequest request;
 
-    try {
-      entity = response.getEntity();
+    StringResponseHandler(HttpUriRequest request) {
+      this.request = request;
+    }
 
+    @Override
+    public String handleResponse(HttpResponse response) throws IOException {
       int statusCode = response.getStatusLine().getStatusCode();
 
       if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
         return EntityUtils.toString(response.getEntity());
+      }
+
+      EntityUtils.consume(response.getEntity());
+      checkErrorStatus(request, statusCode);
+
+      return response.getStatusLine().toString();
+    }
+  }
+
+  private static class ParsingResponseHandler<T> implements ResponseHandler<T> {
+
+    private final HttpUriRequest request;
+    private final EntityParser<T> parser;
+
+    ParsingResponseHandler(HttpUriRequest request, EntityParser<T> parser) {
+      this.request = request;
+      this.parser = parser;
+    }
+
+    @Override
+    public T handleResponse(HttpResponse response) throws IOException {
+      int statusCode = response.getStatusLine().getStatusCode();
 
-      } else if (statusCode >= BAD_REQUEST && statusCode <= VERSION_NOT_SUPPORTED) {
-        final String errMsg =
-            "Request to " + request.getURI() + " failed with status code " + statusCode;
-        LOGGER.error(errMsg);
-        throw new Exception(errMsg);
-      } else {
-        return response.getStatusLine().toString();
+      if (statusCode == HttpStatus.SC_OK || statusCode == HttpStatus.SC_CREATED) {
+        try (InputStream content = response.getEntity().getContent()) {
+          return parser.parse(content);
+        }
       }
 
-    } catch (Exception e) {
-      e.printStackTrace();
+      EntityUtils.consume(response.getEntity());
+      checkErrorStatus(request, statusCode);
+
+      return null;
+    }
+  }
+
+  private static void checkErrorStatus(HttpUriRequest request, int statusCode)
+      throws HttpResponseException {
+    if (statusCode >= BAD_REQUEST && statusCode <= VERSION_NOT_SUPPORTED) {
+      final String errMsg =
+          "Request to " + request.getURI() + " failed with status code " + statusCode;
+      LOGGER.error(errMsg);
+      throw new HttpResponseException(statusCode, errMsg);
     }
-    return entity.toString();
   }
 
   private static HttpUriRequest instantiateRequest(
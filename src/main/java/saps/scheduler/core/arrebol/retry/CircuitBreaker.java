@@ -0,0 +1,93 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.retry;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Logger;
+
+/**
+ * Circuit breaker for the calls to Arrebol. After {@code failureThreshold} consecutive failures the
+ * circuit opens and calls fail fast for {@code openMillis}. After that a single probe call is let
+ * through (half-open): its success closes the circuit again, its failure reopens it.
+ */
+public class CircuitBreaker {
+
+  private static final Logger LOGGER = Logger.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+  private final long openNanos;
+
+  private State state;
+  private int consecutiveFailures;
+  private long openedAt;
+  private boolean probing;
+
+  public CircuitBreaker(int failureThreshold, long openMillis) {
+    if (failureThreshold <= 0 || openMillis <= 0)
+      throw new IllegalArgumentException("Failure threshold and open time must be positive");
+
+    this.failureThreshold = failureThreshold;
+    this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    this.state = State.CLOSED;
+  }
+
+  /**
+   * This function checks whether a call may be made now. When it returns true the caller must
+   * report the outcome with {@link #onSuccess()} or {@link #onFailure()}.
+   *
+   * @return true if the call may be made
+   */
+  public synchronized boolean tryAcquire() {
+    if (state == State.OPEN && System.nanoTime() - openedAt >= openNanos) {
+      LOGGER.info("Arrebol circuit is half-open, probing Arrebol");
+      state = State.HALF_OPEN;
+      probing = false;
+    }
+
+    if (state == State.CLOSED) return true;
+    if (state == State.HALF_OPEN && !probing) {
+      probing = true;
+      return true;
+    }
+    return false;
+  }
+
+  public synchronized void onSuccess() {
+    if (state != State.CLOSED) LOGGER.info("Arrebol circuit is closed, Arrebol is healthy again");
+
+    state = State.CLOSED;
+    consecutiveFailures = 0;
+    probing = false;
+  }
+
+  public synchronized void onFailure() {
+    consecutiveFailures++;
+    probing = false;
+
+    if (state == State.HALF_OPEN
+        || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      LOGGER.warn(
+          "Arrebol circuit is open after "
+              + consecutiveFailures
+              + " consecutive failures, calls will fail fast for "
+              + TimeUnit.NANOSECONDS.toSeconds(openNanos)
+              + " seconds");
+      state = State.OPEN;
+      openedAt = System.nanoTime();
+    }
+  }
+
+  /** @return true if calls are currently failing fast */
+  public synchronized boolean isOpen() {
+    return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+  }
+
+  public synchronized State getState() {
+    return state;
+  }
+}
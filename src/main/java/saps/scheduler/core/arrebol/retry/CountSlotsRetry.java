@@ -0,0 +1,19 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.retry;
+
+import saps.scheduler.core.arrebol.Arrebol;
+import saps.scheduler.core.arrebol.exceptions.GetCountsSlotsException;
+
+public class CountSlotsRetry implements ArrebolRetry<Integer> {
+
+  private Arrebol arrebol;
+
+  public CountSlotsRetry(Arrebol arrebol) {
+    this.arrebol = arrebol;
+  }
+
+  @Override
+  public Integer run() throws GetCountsSlotsException {
+    return arrebol.getCountSlots();
+  }
+}
@@ -0,0 +1,23 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.retry;
+
+import java.util.List;
+import saps.scheduler.core.arrebol.Arrebol;
+import saps.scheduler.core.arrebol.JobStatus;
+import saps.scheduler.core.arrebol.exceptions.GetJobException;
+
+public class GetJobsByIdRetry implements ArrebolRetry<List<JobStatus>> {
+
+  private Arrebol arrebol;
+  private List<String> jobIds;
+
+  public GetJobsByIdRetry(Arrebol arrebol, List<String> jobIds) {
+    this.arrebol = arrebol;
+    this.jobIds = jobIds;
+  }
+
+  @Override
+  public List<JobStatus> run() throws GetJobException {
+    return arrebol.checkStatusJobsById(jobIds);
+  }
+}
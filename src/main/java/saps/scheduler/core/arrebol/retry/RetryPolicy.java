@@ -0,0 +1,51 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.retry;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Capped exponential backoff with jitter, bounded by a deadline. The delay before the attempt n is
+ * drawn between half and the whole of min(maxDelay, baseDelay * 2^n), so concurrent callers do not
+ * retry in lockstep.
+ */
+public class RetryPolicy {
+
+  private static final int MAX_EXPONENT = 30;
+
+  private final long baseDelayMillis;
+  private final long maxDelayMillis;
+  private final long deadlineMillis;
+
+  /**
+   * @param baseDelayMillis delay before the first retry
+   * @param maxDelayMillis max delay between retries
+   * @param deadlineMillis max time spent in an operation, retries included
+   */
+  public RetryPolicy(long baseDelayMillis, long maxDelayMillis, long deadlineMillis) {
+    if (baseDelayMillis <= 0 || maxDelayMillis < baseDelayMillis || deadlineMillis <= 0)
+      throw new IllegalArgumentException(
+          "Retry delays and deadline must be positive and the max delay not below the base delay");
+
+    this.baseDelayMillis = baseDelayMillis;
+    this.maxDelayMillis = maxDelayMillis;
+    this.deadlineMillis = deadlineMillis;
+  }
+
+  /**
+   * This function gets the delay before retrying an operation.
+   *
+   * @param attempt number of failed attempts so far, starting at 0
+   * @return delay in milliseconds
+   */
+  public long getDelayMillis(int attempt) {
+    long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, MAX_EXPONENT));
+    if (cap <= 0) cap = maxDelayMillis;
+
+    long half = cap / 2;
+    return half + ThreadLocalRandom.current().nextLong(cap - half + 1);
+  }
+
+  public long getDeadlineMillis() {
+    return deadlineMillis;
+  }
+}
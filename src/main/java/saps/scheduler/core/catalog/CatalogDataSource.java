@@ -0,0 +1,38 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+import java.util.Properties;
+import org.apache.commons.dbcp2.BasicDataSource;
+import saps.common.utils.SapsPropertiesConstants;
+
+public class CatalogDataSource {
+
+  private static final int MAX_CONNECTIONS = 8;
+
+  /**
+   * This function creates a connection pool to the Catalog database, using the same properties as
+   * the Catalog component. The pool is meant to be shared by the {@code JDBCCatalog} and the JDBC
+   * selection query and task writer, so the scheduler keeps a single pool.
+   *
+   * @param properties Scheduler properties
+   * @return pooled data source
+   */
+  public static BasicDataSource create(Properties properties) {
+    String url =
+        properties.getProperty(SapsPropertiesConstants.DATASTORE_URL_PREFIX)
+            + properties.getProperty(SapsPropertiesConstants.IMAGE_DATASTORE_IP)
+            + ":"
+            + properties.getProperty(SapsPropertiesConstants.IMAGE_DATASTORE_PORT)
+            + "/"
+            + properties.getProperty(SapsPropertiesConstants.DATASTORE_NAME);
+
+    BasicDataSource dataSource = new BasicDataSource();
+    dataSource.setDriverClassName(properties.getProperty(SapsPropertiesConstants.DATASTORE_DRIVER));
+    dataSource.setUrl(url);
+    dataSource.setUsername(properties.getProperty(SapsPropertiesConstants.DATASTORE_USERNAME));
+    dataSource.setPassword(properties.getProperty(SapsPropertiesConstants.DATASTORE_PASSWORD));
+    dataSource.setMaxTotal(MAX_CONNECTIONS);
+
+    return dataSource;
+  }
+}
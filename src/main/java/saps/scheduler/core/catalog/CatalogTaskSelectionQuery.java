@@ -0,0 +1,58 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import saps.catalog.core.Catalog;
+import saps.catalog.core.retry.CatalogUtils;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.scheduler.core.selector.TasksByUser;
+
+/**
+ * Selection query for any {@link Catalog}: it fetches every task in each state and keeps the first
+ * tasks of each user with a bounded heap, in O(n log limitPerUser). Catalogs backed by the SAPS
+ * database should use {@link JDBCTaskSelectionQuery}, which applies the limit in the database.
+ */
+public class CatalogTaskSelectionQuery implements TaskSelectionQuery {
+
+  private final Catalog catalog;
+
+  public CatalogTaskSelectionQuery(Catalog catalog) {
+    this.catalog = catalog;
+  }
+
+  @Override
+  public List<SapsImage> getSelectableTasks(
+      List<ImageTaskState> states, int limitPerUser, long agedBefore) {
+    List<SapsImage> selectableTasks = new ArrayList<SapsImage>();
+    Comparator<SapsImage> lastInSchedulingOrder =
+        Collections.reverseOrder(TasksByUser.schedulingOrder(agedBefore));
+
+    for (ImageTaskState state : states) {
+      Map<String, PriorityQueue<SapsImage>> tasksByUser =
+          new HashMap<String, PriorityQueue<SapsImage>>();
+
+      for (SapsImage task : CatalogUtils.getTasks(catalog, state)) {
+        PriorityQueue<SapsImage> userTasks = tasksByUser.get(task.getUser());
+        if (userTasks == null) {
+          userTasks = new PriorityQueue<SapsImage>(limitPerUser + 1, lastInSchedulingOrder);
+          tasksByUser.put(task.getUser(), userTasks);
+        }
+
+        userTasks.add(task);
+        if (userTasks.size() > limitPerUser) userTasks.poll();
+      }
+
+      for (PriorityQueue<SapsImage> userTasks : tasksByUser.values())
+        selectableTasks.addAll(userTasks);
+    }
+
+    return selectableTasks;
+  }
+}
@@ -0,0 +1,37 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+import saps.catalog.core.Catalog;
+import saps.catalog.core.retry.CatalogUtils;
+import saps.common.core.model.SapsImage;
+
+/**
+ * Task writer for any {@link Catalog}: every write is sent right away, one task at a time.
+ * Catalogs backed by the SAPS database should use {@link JDBCTaskWriter}, which batches the writes.
+ */
+public class CatalogTaskWriter implements TaskWriter {
+
+  private final Catalog catalog;
+
+  public CatalogTaskWriter(Catalog catalog) {
+    this.catalog = catalog;
+  }
+
+  @Override
+  public TaskWriteBatch newBatch() {
+    return new TaskWriteBatch() {
+      @Override
+      public void updateState(SapsImage task) {
+        CatalogUtils.updateState(catalog, task);
+      }
+
+      @Override
+      public void addTimestamp(SapsImage task) {
+        CatalogUtils.addTimestampTask(catalog, task);
+      }
+
+      @Override
+      public void flush() {}
+    };
+  }
+}
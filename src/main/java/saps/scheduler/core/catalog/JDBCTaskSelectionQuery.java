@@ -0,0 +1,132 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.apache.log4j.Logger;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+
+/**
+ * Selection query that ranks the tasks of each user in the database, so only the tasks that can
+ * actually be selected are transferred and materialized, all states in a single query. It is best
+ * served by an index on the tasks table over (state, user_email, priority, creation_time); aged
+ * tasks are ranked first with the same expressions as {@code TasksByUser.schedulingOrder}. A failed
+ * query is retried, as the {@link saps.catalog.core.retry.CatalogUtils} calls are.
+ */
+public class JDBCTaskSelectionQuery implements TaskSelectionQuery {
+
+  private static final Logger LOGGER = Logger.getLogger(JDBCTaskSelectionQuery.class);
+
+  private static final String USER_RANK = "user_rank";
+
+  private static final int MAX_ATTEMPTS = 5;
+  private static final long RETRY_SLEEP_MILLIS = 5000;
+
+  private static final String SELECT_TOP_TASKS_PER_USER_SQL_PREFIX =
+      "SELECT * FROM (SELECT t.*, ROW_NUMBER() OVER (PARTITION BY t."
+          + TasksTable.USER_EMAIL
+          + ", t."
+          + TasksTable.STATE
+          + " ORDER BY CASE WHEN t."
+          + TasksTable.CREATION_TIME
+          + " < ? THEN 0 ELSE 1 END, CASE WHEN t."
+          + TasksTable.CREATION_TIME
+          + " < ? THEN t."
+          + TasksTable.CREATION_TIME
+          + " END, t."
+          + TasksTable.PRIORITY
+          + " DESC, t."
+          + TasksTable.CREATION_TIME
+          + " DESC) AS "
+          + USER_RANK
+          + " FROM "
+          + TasksTable.NAME
+          + " t WHERE t."
+          + TasksTable.STATE
+          + " IN (";
+  private static final String SELECT_TOP_TASKS_PER_USER_SQL_SUFFIX =
+      ")) ranked WHERE " + USER_RANK + " <= ?";
+
+  private final DataSource dataSource;
+
+  public JDBCTaskSelectionQuery(DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  @Override
+  public List<SapsImage> getSelectableTasks(
+      List<ImageTaskState> states, int limitPerUser, long agedBefore) {
+    List<SapsImage> tasks = new ArrayList<SapsImage>();
+    if (states.isEmpty()) return tasks;
+
+    StringBuilder sql = new StringBuilder(SELECT_TOP_TASKS_PER_USER_SQL_PREFIX);
+    for (int i = 0; i < states.size(); i++) sql.append(i == 0 ? "?" : ", ?");
+    sql.append(SELECT_TOP_TASKS_PER_USER_SQL_SUFFIX);
+
+    for (int attempt = 1; ; attempt++) {
+      try {
+        tasks = query(sql.toString(), states, limitPerUser, agedBefore);
+        break;
+      } catch (SQLException e) {
+        if (attempt == MAX_ATTEMPTS)
+          throw new IllegalStateException(
+              "Error while getting up to "
+                  + limitPerUser
+                  + " tasks per user in states "
+                  + states
+                  + " from Catalog after "
+                  + attempt
+                  + " attempts",
+              e);
+
+        LOGGER.warn(
+            "Error while getting selectable tasks from Catalog, retrying in "
+                + RETRY_SLEEP_MILLIS
+                + " ms",
+            e);
+        sleep();
+      }
+    }
+
+    LOGGER.debug("Got " + tasks.size() + " selectable tasks in states " + states);
+    return tasks;
+  }
+
+  private List<SapsImage> query(
+      String sql, List<ImageTaskState> states, int limitPerUser, long agedBefore)
+      throws SQLException {
+    List<SapsImage> tasks = new ArrayList<SapsImage>();
+
+    try (Connection connection = dataSource.getConnection();
+        PreparedStatement statement = connection.prepareStatement(sql)) {
+      Timestamp agingLimit = new Timestamp(agedBefore);
+      statement.setTimestamp(1, agingLimit);
+      statement.setTimestamp(2, agingLimit);
+      int parameter = 3;
+      for (ImageTaskState state : states) statement.setString(parameter++, state.getValue());
+      statement.setInt(parameter, limitPerUser);
+
+      try (ResultSet rs = statement.executeQuery()) {
+        while (rs.next()) tasks.add(TasksTable.extractTask(rs));
+      }
+    }
+
+    return tasks;
+  }
+
+  private static void sleep() {
+    try {
+      Thread.sleep(RETRY_SLEEP_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while getting selectable tasks from Catalog", e);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.apache.log4j.Logger;
+import saps.catalog.core.Catalog;
+import saps.catalog.core.retry.CatalogUtils;
+import saps.common.core.model.SapsImage;
+
+/**
+ * Task writer that buffers the writes of a batch and sends them as JDBC batch statements in a
+ * single transaction. If the transaction fails, it is rolled back and the buffered writes are sent
+ * one task at a time through the {@link Catalog}, with its usual retries.
+ *
+ * <p>Each write takes a copy of the task when it is made, stamped with the time it was made, so
+ * the values written are the ones the Catalog would have got had the write been sent right away,
+ * even if the task changes again before the flush.
+ */
+public class JDBCTaskWriter implements TaskWriter {
+
+  private static final Logger LOGGER = Logger.getLogger(JDBCTaskWriter.class);
+
+  private static final String UPDATE_TASK_STATE_SQL =
+      "UPDATE "
+          + TasksTable.NAME
+          + " SET "
+          + TasksTable.STATE
+          + " = ?, "
+          + TasksTable.STATUS
+          + " = ?, "
+          + TasksTable.ERROR_MSG
+          + " = ?, "
+          + TasksTable.ARREBOL_JOB_ID
+          + " = ?, "
+          + TasksTable.UPDATED_TIME
+          + " = ? WHERE "
+          + TasksTable.TASK_ID
+          + " = ?";
+
+  private static final String INSERT_TIMESTAMP_SQL =
+      "INSERT INTO "
+          + TimestampsTable.NAME
+          + " ("
+          + TimestampsTable.TASK_ID
+          + ", "
+          + TimestampsTable.STATE
+          + ", "
+          + TimestampsTable.UPDATED_TIME
+          + ") VALUES (?, ?, ?)";
+
+  private final DataSource dataSource;
+  private final Catalog catalog;
+
+  /**
+   * @param dataSource connections to the Catalog database
+   * @param catalog Catalog used for the per-task writes when a batch fails
+   */
+  public JDBCTaskWriter(DataSource dataSource, Catalog catalog) {
+    this.dataSource = dataSource;
+    this.catalog = catalog;
+  }
+
+  @Override
+  public TaskWriteBatch newBatch() {
+    return new JDBCTaskWriteBatch();
+  }
+
+  private class JDBCTaskWriteBatch implements TaskWriteBatch {
+
+    private final Map<String, SapsImage> updates = new LinkedHashMap<String, SapsImage>();
+    private final List<SapsImage> stateChanges = new ArrayList<SapsImage>();
+
+    @Override
+    public void updateState(SapsImage task) {
+      updates.remove(task.getTaskId());
+      updates.put(task.getTaskId(), snapshot(task));
+    }
+
+    @Override
+    public void addTimestamp(SapsImage task) {
+      stateChanges.add(snapshot(task));
+    }
+
+    @Override
+    public void flush() {
+      if (updates.isEmpty() && stateChanges.isEmpty()) return;
+
+      try {
+        write();
+        LOGGER.debug(
+            "Wrote "
+                + updates.size()
+                + " task updates and "
+                + stateChanges.size()
+                + " timestamps in a single transaction");
+      } catch (SQLException e) {
+        LOGGER.error("Error while writing batch of task changes, writing them one at a time", e);
+        writeOneAtATime();
+      } finally {
+        updates.clear();
+        stateChanges.clear();
+      }
+    }
+
+    private void write() throws SQLException {
+      try (Connection connection = dataSource.getConnection()) {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+
+        try {
+          if (!updates.isEmpty()) writeUpdates(connection);
+          if (!stateChanges.isEmpty()) writeStateChanges(connection);
+          connection.commit();
+        } catch (SQLException e) {
+          connection.rollback();
+          throw e;
+        } finally {
+          connection.setAutoCommit(autoCommit);
+        }
+      }
+    }
+
+    private void writeUpdates(Connection connection) throws SQLException {
+      try (PreparedStatement statement = connection.prepareStatement(UPDATE_TASK_STATE_SQL)) {
+        for (SapsImage task : updates.values()) {
+          statement.setString(1, task.getState().getValue());
+          statement.setString(2, task.getStatus());
+          statement.setString(3, task.getError());
+          statement.setString(4, task.getArrebolJobId());
+          statement.setTimestamp(5, task.getUpdateTime());
+          statement.setString(6, task.getTaskId());
+          statement.addBatch();
+        }
+
+        int[] counts = statement.executeBatch();
+        int row = 0;
+        for (SapsImage task : updates.values()) {
+          if (counts[row++] == 0)
+            LOGGER.warn("Task [" + task.getTaskId() + "] not found in Catalog while updating it");
+        }
+      }
+    }
+
+    private void writeStateChanges(Connection connection) throws SQLException {
+      try (PreparedStatement statement = connection.prepareStatement(INSERT_TIMESTAMP_SQL)) {
+        for (SapsImage stateChange : stateChanges) {
+          statement.setString(1, stateChange.getTaskId());
+          statement.setString(2, stateChange.getState().getValue());
+          statement.setTimestamp(3, stateChange.getUpdateTime());
+          statement.addBatch();
+        }
+
+        int[] counts = statement.executeBatch();
+        for (int count : counts) {
+          if (count == 0 || (count < 0 && count != Statement.SUCCESS_NO_INFO))
+            throw new SQLException("Timestamp batch was not fully inserted");
+        }
+      }
+    }
+
+    private void writeOneAtATime() {
+      for (SapsImage task : updates.values()) CatalogUtils.updateState(catalog, task);
+      for (SapsImage stateChange : stateChanges)
+        CatalogUtils.addTimestampTask(catalog, stateChange);
+    }
+  }
+
+  /** @return copy of the task as it is now, with the current time as its update time */
+  private static SapsImage snapshot(SapsImage task) {
+    return new SapsImage(
+        task.getTaskId(),
+        task.getDataset(),
+        task.getRegion(),
+        task.getImageDate(),
+        task.getState(),
+        task.getArrebolJobId(),
+        task.getFederationMember(),
+        task.getPriority(),
+        task.getUser(),
+        task.getInputdownloadingTag(),
+        task.getDigestInputdownloading(),
+        task.getPreprocessingTag(),
+        task.getDigestPreprocessing(),
+        task.getProcessingTag(),
+        task.getDigestProcessing(),
+        task.getCreationTime(),
+        new Timestamp(System.currentTimeMillis()),
+        task.getStatus(),
+        task.getError());
+  }
+}
@@ -0,0 +1,24 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+import java.util.List;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+
+public interface TaskSelectionQuery {
+
+  /**
+   * This function gets, for each user and state, the tasks that come first in the scheduling order
+   * (tasks created before the aging limit first, oldest first, then higher priority first and then
+   * newer first, see {@link saps.scheduler.core.selector.TasksByUser#schedulingOrder(long)}). Since
+   * no user can get more tasks than there are slots, the slots count is a safe per-user limit for
+   * any selector.
+   *
+   * @param states states of the tasks
+   * @param limitPerUser max number of tasks returned for each user in each state
+   * @param agedBefore aging limit in milliseconds since the epoch, or 0 if tasks do not age
+   * @return up to limitPerUser tasks of each user in each of the states
+   */
+  public List<SapsImage> getSelectableTasks(
+      List<ImageTaskState> states, int limitPerUser, long agedBefore);
+}
@@ -0,0 +1,29 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+import saps.common.core.model.SapsImage;
+
+/**
+ * Task writes of a scheduling cycle. Writes may be buffered until {@link #flush()}, so a write is
+ * only guaranteed to be in the Catalog after the next flush returns.
+ */
+public interface TaskWriteBatch {
+
+  /**
+   * This function writes the state, status, error and Arrebol job id of the task. When the same
+   * task is updated more than once before a flush, only its last values are written.
+   *
+   * @param task task to be updated
+   */
+  public void updateState(SapsImage task);
+
+  /**
+   * This function records that the task reached its current state.
+   *
+   * @param task task whose state changed
+   */
+  public void addTimestamp(SapsImage task);
+
+  /** This function writes every buffered write to the Catalog. */
+  public void flush();
+}
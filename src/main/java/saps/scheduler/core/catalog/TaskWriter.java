@@ -0,0 +1,13 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+public interface TaskWriter {
+
+  /**
+   * This function starts a batch of task writes. A batch must be used by a single thread, usually
+   * for a single scheduling cycle.
+   *
+   * @return new empty batch
+   */
+  public TaskWriteBatch newBatch();
+}
@@ -0,0 +1,62 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+
+/** Names of the Catalog tasks table and its columns, as created by the Catalog component. */
+class TasksTable {
+
+  static final String NAME = "tasks";
+
+  static final String TASK_ID = "task_id";
+  static final String DATASET = "dataset";
+  static final String REGION = "region";
+  static final String IMAGE_DATE = "image_date";
+  static final String STATE = "state";
+  static final String ARREBOL_JOB_ID = "arrebol_job_id";
+  static final String FEDERATION_MEMBER = "federation_member";
+  static final String PRIORITY = "priority";
+  static final String USER_EMAIL = "user_email";
+  static final String INPUTDOWNLOADING_TAG = "inputdownloading_tag";
+  static final String INPUTDOWNLOADING_DIGEST = "inputdownloading_digest";
+  static final String PREPROCESSING_TAG = "preprocessing_tag";
+  static final String PREPROCESSING_DIGEST = "preprocessing_digest";
+  static final String PROCESSING_TAG = "processing_tag";
+  static final String PROCESSING_DIGEST = "processing_digest";
+  static final String CREATION_TIME = "creation_time";
+  static final String UPDATED_TIME = "updated_time";
+  static final String STATUS = "status";
+  static final String ERROR_MSG = "error_msg";
+
+  /**
+   * This function builds the task in the current row of a query over the tasks table.
+   *
+   * @param rs result set positioned at the row
+   * @return task in the row
+   */
+  static SapsImage extractTask(ResultSet rs) throws SQLException {
+    return new SapsImage(
+        rs.getString(TASK_ID),
+        rs.getString(DATASET),
+        rs.getString(REGION),
+        rs.getDate(IMAGE_DATE),
+        ImageTaskState.getStateFromStr(rs.getString(STATE)),
+        rs.getString(ARREBOL_JOB_ID),
+        rs.getString(FEDERATION_MEMBER),
+        rs.getInt(PRIORITY),
+        rs.getString(USER_EMAIL),
+        rs.getString(INPUTDOWNLOADING_TAG),
+        rs.getString(INPUTDOWNLOADING_DIGEST),
+        rs.getString(PREPROCESSING_TAG),
+        rs.getString(PREPROCESSING_DIGEST),
+        rs.getString(PROCESSING_TAG),
+        rs.getString(PROCESSING_DIGEST),
+        rs.getTimestamp(CREATION_TIME),
+        rs.getTimestamp(UPDATED_TIME),
+        rs.getString(STATUS),
+        rs.getString(ERROR_MSG));
+  }
+}
@@ -0,0 +1,12 @@
+/* (C)2020 */
+package saps.scheduler.core.catalog;
+
+/** Names of the Catalog table of task state changes and its columns. */
+class TimestampsTable {
+
+  static final String NAME = "timestamps";
+
+  static final String TASK_ID = "task_id";
+  static final String STATE = "state";
+  static final String UPDATED_TIME = "updated_time";
+}
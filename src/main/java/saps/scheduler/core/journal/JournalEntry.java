@@ -0,0 +1,35 @@
+/* (C)2020 */
+package saps.scheduler.core.journal;
+
+import saps.common.core.model.enums.ImageTaskState;
+
+public class JournalEntry {
+
+  private final String taskId;
+  private final ImageTaskState phase;
+  private final String jobId;
+
+  public JournalEntry(String taskId, ImageTaskState phase, String jobId) {
+    this.taskId = taskId;
+    this.phase = phase;
+    this.jobId = jobId;
+  }
+
+  public String getTaskId() {
+    return taskId;
+  }
+
+  public ImageTaskState getPhase() {
+    return phase;
+  }
+
+  /** @return job identifier in Arrebol, or null if the submission result was not recorded */
+  public String getJobId() {
+    return jobId;
+  }
+
+  @Override
+  public String toString() {
+    return taskId + "[" + phase + "] -> " + jobId;
+  }
+}
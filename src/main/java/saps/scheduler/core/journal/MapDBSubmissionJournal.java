@@ -0,0 +1,144 @@
+/* (C)2020 */
+package saps.scheduler.core.journal;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.log4j.Logger;
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import saps.common.core.model.enums.ImageTaskState;
+
+/**
+ * Append-only journal stored in a memory-mapped MapDB file. Each record is appended with a growing
+ * sequence number and committed before the call returns. The pending submissions are also kept in
+ * memory, so the log is compacted, rewriting only the pending ones, once it grows past {@code
+ * compactionFactor} times their number. The records in the log are counted as they are written,
+ * since the size of a MapDB tree map is only known by walking it.
+ */
+public class MapDBSubmissionJournal implements SubmissionJournal {
+
+  private static final Logger LOGGER = Logger.getLogger(MapDBSubmissionJournal.class);
+
+  private static final String LOG_NAME = "submission-log";
+  private static final String SEPARATOR = "\t";
+  private static final String NO_JOB_ID = "";
+
+  private static final String INTENT = "I";
+  private static final String SUBMITTED = "S";
+  private static final String COMPLETED = "C";
+
+  private static final int MIN_RECORDS_TO_COMPACT = 1000;
+
+  private final DB db;
+  private final BTreeMap<Long, String> log;
+  private final ConcurrentMap<String, JournalEntry> pending;
+  private final int compactionFactor;
+  private long nextSequence;
+  private long records;
+
+  public MapDBSubmissionJournal(File file, int compactionFactor) {
+    File directory = file.getAbsoluteFile().getParentFile();
+    if (directory != null && !directory.exists() && !directory.mkdirs())
+      throw new IllegalArgumentException("Cannot create journal directory [" + directory + "]");
+
+    this.db = DBMaker.newFileDB(file).mmapFileEnableIfSupported().closeOnJvmShutdown().make();
+    this.log = db.getTreeMap(LOG_NAME);
+    this.pending = new ConcurrentHashMap<String, JournalEntry>();
+    this.compactionFactor = compactionFactor;
+    this.nextSequence = log.isEmpty() ? 0 : log.lastKey() + 1;
+
+    load();
+    compact();
+  }
+
+  @Override
+  public synchronized void recordIntent(String taskId, ImageTaskState phase) {
+    pending.put(taskId, new JournalEntry(taskId, phase, null));
+    append(INTENT, taskId, phase, NO_JOB_ID);
+  }
+
+  @Override
+  public synchronized void recordSubmitted(String taskId, ImageTaskState phase, String jobId) {
+    pending.put(taskId, new JournalEntry(taskId, phase, jobId));
+    append(SUBMITTED, taskId, phase, jobId);
+  }
+
+  @Override
+  public synchronized void recordCompleted(String taskId) {
+    if (pending.remove(taskId) == null) return;
+
+    append(COMPLETED, taskId, null, NO_JOB_ID);
+
+    if (records > MIN_RECORDS_TO_COMPACT && records > (long) compactionFactor * pending.size())
+      compact();
+  }
+
+  @Override
+  public Map<String, JournalEntry> replay() {
+    return new HashMap<String, JournalEntry>(pending);
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!db.isClosed()) db.close();
+  }
+
+  private void append(String type, String taskId, ImageTaskState phase, String jobId) {
+    write(type, taskId, phase, jobId);
+    db.commit();
+  }
+
+  private void write(String type, String taskId, ImageTaskState phase, String jobId) {
+    String phaseValue = phase == null ? "" : phase.name();
+    log.put(nextSequence++, type + SEPARATOR + taskId + SEPARATOR + phaseValue + SEPARATOR + jobId);
+    records++;
+  }
+
+  private void load() {
+    long start = System.currentTimeMillis();
+
+    for (String record : log.values()) {
+      records++;
+      String[] fields = record.split(SEPARATOR, -1);
+      String type = fields[0];
+      String taskId = fields[1];
+
+      if (COMPLETED.equals(type)) {
+        pending.remove(taskId);
+      } else {
+        ImageTaskState phase = ImageTaskState.valueOf(fields[2]);
+        String jobId = SUBMITTED.equals(type) ? fields[3] : null;
+        pending.put(taskId, new JournalEntry(taskId, phase, jobId));
+      }
+    }
+
+    LOGGER.info(
+        "Replayed "
+            + records
+            + " journal records into "
+            + pending.size()
+            + " pending submissions in "
+            + (System.currentTimeMillis() - start)
+            + " ms");
+  }
+
+  private synchronized void compact() {
+    if (records == pending.size()) return;
+
+    LOGGER.info("Compacting submission journal with " + records + " records");
+
+    log.clear();
+    nextSequence = 0;
+    records = 0;
+    for (JournalEntry entry : pending.values()) {
+      if (entry.getJobId() == null) write(INTENT, entry.getTaskId(), entry.getPhase(), NO_JOB_ID);
+      else write(SUBMITTED, entry.getTaskId(), entry.getPhase(), entry.getJobId());
+    }
+    db.commit();
+    db.compact();
+  }
+}
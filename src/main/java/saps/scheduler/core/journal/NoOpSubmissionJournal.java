@@ -0,0 +1,27 @@
+/* (C)2020 */
+package saps.scheduler.core.journal;
+
+import java.util.Collections;
+import java.util.Map;
+import saps.common.core.model.enums.ImageTaskState;
+
+/** Journal used when no journal file is configured: recovery relies only on Catalog and Arrebol. */
+public class NoOpSubmissionJournal implements SubmissionJournal {
+
+  @Override
+  public void recordIntent(String taskId, ImageTaskState phase) {}
+
+  @Override
+  public void recordSubmitted(String taskId, ImageTaskState phase, String jobId) {}
+
+  @Override
+  public void recordCompleted(String taskId) {}
+
+  @Override
+  public Map<String, JournalEntry> replay() {
+    return Collections.emptyMap();
+  }
+
+  @Override
+  public void close() {}
+}
@@ -0,0 +1,46 @@
+/* (C)2020 */
+package saps.scheduler.core.journal;
+
+import java.util.Map;
+import saps.common.core.model.enums.ImageTaskState;
+
+/**
+ * Local journal of the jobs submitted to Arrebol. It lets the recovery rebuild the submitted job
+ * list without asking Arrebol for jobs whose id never reached the Catalog.
+ */
+public interface SubmissionJournal {
+
+  /**
+   * This function records that a job is about to be submitted for a task.
+   *
+   * @param taskId task identifier
+   * @param phase task state run by the job
+   */
+  public void recordIntent(String taskId, ImageTaskState phase);
+
+  /**
+   * This function records the id of the job submitted for a task.
+   *
+   * @param taskId task identifier
+   * @param phase task state run by the job
+   * @param jobId job identifier in Arrebol
+   */
+  public void recordSubmitted(String taskId, ImageTaskState phase, String jobId);
+
+  /**
+   * This function records that the job of a task is no longer in Arrebol (finished, failed to be
+   * submitted or rolled back).
+   *
+   * @param taskId task identifier
+   */
+  public void recordCompleted(String taskId);
+
+  /**
+   * This function replays the journal.
+   *
+   * @return pending submissions by task id
+   */
+  public Map<String, JournalEntry> replay();
+
+  public void close();
+}
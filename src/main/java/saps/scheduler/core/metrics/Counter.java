@@ -0,0 +1,27 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonic count of events. */
+public class Counter implements Metric {
+
+  private final LongAdder count = new LongAdder();
+
+  public void inc() {
+    count.increment();
+  }
+
+  public void inc(long amount) {
+    count.add(amount);
+  }
+
+  public long get() {
+    return count.sum();
+  }
+
+  @Override
+  public void write(String name, String labels, StringBuilder out) {
+    MetricsRegistry.writeSample(out, name, labels, get());
+  }
+}
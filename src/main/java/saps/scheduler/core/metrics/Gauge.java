@@ -0,0 +1,13 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+/** Value that goes up and down, read when the metrics are scraped. */
+public abstract class Gauge implements Metric {
+
+  public abstract double get();
+
+  @Override
+  public void write(String name, String labels, StringBuilder out) {
+    MetricsRegistry.writeSample(out, name, labels, get());
+  }
+}
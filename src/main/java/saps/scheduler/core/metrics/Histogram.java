@@ -0,0 +1,64 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Distribution of durations, in seconds, over fixed cumulative buckets. */
+public class Histogram implements Metric {
+
+  private final double[] upperBounds;
+  private final LongAdder[] buckets;
+  private final LongAdder count;
+  private final DoubleAdder sum;
+
+  /** @param upperBounds bucket upper bounds in seconds, in increasing order */
+  Histogram(double[] upperBounds) {
+    this.upperBounds = upperBounds;
+    this.buckets = new LongAdder[upperBounds.length];
+    for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    this.count = new LongAdder();
+    this.sum = new DoubleAdder();
+  }
+
+  public void observe(double seconds) {
+    for (int i = 0; i < upperBounds.length; i++) {
+      if (seconds <= upperBounds[i]) {
+        buckets[i].increment();
+        break;
+      }
+    }
+    count.increment();
+    sum.add(seconds);
+  }
+
+  /**
+   * This function observes the time elapsed since a {@link System#nanoTime()} reading.
+   *
+   * @param startNanos reading taken when the observed operation started
+   */
+  public void observeSince(long startNanos) {
+    observe((System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1));
+  }
+
+  @Override
+  public void write(String name, String labels, StringBuilder out) {
+    String separator = labels.isEmpty() ? "" : ",";
+    long cumulative = 0;
+
+    for (int i = 0; i < upperBounds.length; i++) {
+      cumulative += buckets[i].sum();
+      MetricsRegistry.writeSample(
+          out,
+          name + "_bucket",
+          labels + separator + "le=\"" + upperBounds[i] + "\"",
+          cumulative);
+    }
+
+    long total = count.sum();
+    MetricsRegistry.writeSample(out, name + "_bucket", labels + separator + "le=\"+Inf\"", total);
+    MetricsRegistry.writeSample(out, name + "_sum", labels, sum.sum());
+    MetricsRegistry.writeSample(out, name + "_count", labels, total);
+  }
+}
@@ -0,0 +1,16 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+/** A single time series (or a set of them, for histograms) in the Prometheus text format. */
+interface Metric {
+
+  /**
+   * This function writes the current samples of the metric.
+   *
+   * @param name metric family name
+   * @param labels labels of the metric, already formatted as {@code name="value",...} (may be
+   *     empty)
+   * @param out exposition being written
+   */
+  void write(String name, String labels, StringBuilder out);
+}
@@ -0,0 +1,96 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics sharing a name, one for each combination of label values.
+ *
+ * @param <T> type of the metrics
+ */
+public class MetricFamily<T extends Metric> {
+
+  interface Factory<T> {
+    T create();
+  }
+
+  private final String name;
+  private final String help;
+  private final String type;
+  private final String[] labelNames;
+  private final Factory<T> factory;
+  private final ConcurrentMap<String, T> metrics;
+
+  MetricFamily(String name, String help, String type, String[] labelNames, Factory<T> factory) {
+    this.name = name;
+    this.help = help;
+    this.type = type;
+    this.labelNames = labelNames.clone();
+    this.factory = factory;
+    this.metrics = new ConcurrentHashMap<String, T>();
+  }
+
+  /**
+   * This function gets the metric with the label values, creating it on first use.
+   *
+   * @param labelValues one value for each label name of the family, in the same order
+   * @return metric with the label values
+   */
+  public T labels(String... labelValues) {
+    String labels = formatLabels(labelValues);
+    T metric = metrics.get(labels);
+    if (metric != null) return metric;
+
+    T newMetric = factory.create();
+    metric = metrics.putIfAbsent(labels, newMetric);
+    return metric != null ? metric : newMetric;
+  }
+
+  /**
+   * This function sets the metric with the label values, replacing any previous one. It is meant
+   * for gauges computed by the caller.
+   *
+   * @param metric metric to be set
+   * @param labelValues one value for each label name of the family, in the same order
+   */
+  public void register(T metric, String... labelValues) {
+    metrics.put(formatLabels(labelValues), metric);
+  }
+
+  String getName() {
+    return name;
+  }
+
+  void write(StringBuilder out) {
+    out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    for (Map.Entry<String, T> metric : metrics.entrySet())
+      metric.getValue().write(name, metric.getKey(), out);
+  }
+
+  private String formatLabels(String[] labelValues) {
+    if (labelValues.length != labelNames.length)
+      throw new IllegalArgumentException(
+          "Metric [" + name + "] takes " + labelNames.length + " label values");
+
+    StringBuilder labels = new StringBuilder();
+    for (int i = 0; i < labelNames.length; i++) {
+      if (i > 0) labels.append(',');
+      labels.append(labelNames[i]).append("=\"");
+      escape(labelValues[i], labels);
+      labels.append('"');
+    }
+    return labels.toString();
+  }
+
+  private static void escape(String value, StringBuilder out) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' || c == '"') out.append('\\').append(c);
+      else if (c == '\n') out.append("\\n");
+      else out.append(c);
+    }
+  }
+}
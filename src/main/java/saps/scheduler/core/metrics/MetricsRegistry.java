@@ -0,0 +1,126 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Set of metric families, written in the Prometheus text exposition format. Metrics are updated
+ * with lock-free adders, so recording them on the scheduler hot paths costs no contention, and the
+ * values are only read when the metrics are scraped.
+ */
+public class MetricsRegistry {
+
+  private final ConcurrentMap<String, MetricFamily<?>> families;
+
+  public MetricsRegistry() {
+    this.families = new ConcurrentSkipListMap<String, MetricFamily<?>>();
+  }
+
+  public MetricFamily<Counter> counter(String name, String help, String... labelNames) {
+    return register(
+        new MetricFamily<Counter>(
+            name,
+            help,
+            "counter",
+            labelNames,
+            new MetricFamily.Factory<Counter>() {
+              @Override
+              public Counter create() {
+                return new Counter();
+              }
+            }));
+  }
+
+  public MetricFamily<SettableGauge> gauge(String name, String help, String... labelNames) {
+    return register(
+        new MetricFamily<SettableGauge>(
+            name,
+            help,
+            "gauge",
+            labelNames,
+            new MetricFamily.Factory<SettableGauge>() {
+              @Override
+              public SettableGauge create() {
+                return new SettableGauge();
+              }
+            }));
+  }
+
+  /**
+   * This function creates a family of gauges whose values are computed when scraped, to be set
+   * with {@link MetricFamily#register(Metric, String...)}.
+   */
+  public MetricFamily<Gauge> computedGauge(final String name, String help, String... labelNames) {
+    return register(
+        new MetricFamily<Gauge>(
+            name,
+            help,
+            "gauge",
+            labelNames,
+            new MetricFamily.Factory<Gauge>() {
+              @Override
+              public Gauge create() {
+                throw new IllegalStateException("Gauge [" + name + "] must be registered");
+              }
+            }));
+  }
+
+  /** @param buckets bucket upper bounds in seconds, in increasing order */
+  public MetricFamily<Histogram> histogram(
+      String name, String help, final double[] buckets, String... labelNames) {
+    for (int i = 1; i < buckets.length; i++) {
+      if (buckets[i] <= buckets[i - 1])
+        throw new IllegalArgumentException("Buckets of [" + name + "] are not increasing");
+    }
+
+    return register(
+        new MetricFamily<Histogram>(
+            name,
+            help,
+            "histogram",
+            labelNames,
+            new MetricFamily.Factory<Histogram>() {
+              @Override
+              public Histogram create() {
+                return new Histogram(buckets.clone());
+              }
+            }));
+  }
+
+  /**
+   * This function writes every metric in the Prometheus text exposition format (version 0.0.4).
+   *
+   * @return metrics exposition
+   */
+  public String expose() {
+    StringBuilder out = new StringBuilder();
+    for (MetricFamily<?> family : families.values()) family.write(out);
+    return out.toString();
+  }
+
+  private <T extends Metric> MetricFamily<T> register(MetricFamily<T> family) {
+    if (families.putIfAbsent(family.getName(), family) != null)
+      throw new IllegalArgumentException("Metric [" + family.getName() + "] already registered");
+    return family;
+  }
+
+  static void writeSample(StringBuilder out, String name, String labels, long value) {
+    writeName(out, name, labels);
+    out.append(value).append('\n');
+  }
+
+  static void writeSample(StringBuilder out, String name, String labels, double value) {
+    writeName(out, name, labels);
+    if (Double.isNaN(value)) out.append("NaN");
+    else if (Double.isInfinite(value)) out.append(value > 0 ? "+Inf" : "-Inf");
+    else out.append(value);
+    out.append('\n');
+  }
+
+  private static void writeName(StringBuilder out, String name, String labels) {
+    out.append(name);
+    if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+    out.append(' ');
+  }
+}
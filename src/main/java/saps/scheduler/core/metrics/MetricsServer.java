@@ -0,0 +1,50 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+import org.apache.log4j.Logger;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+
+/** HTTP server answering any GET with the metrics of a registry, to be scraped by Prometheus. */
+public class MetricsServer {
+
+  private static final Logger LOGGER = Logger.getLogger(MetricsServer.class);
+
+  private final Server server;
+
+  public MetricsServer(int port, final MetricsRegistry registry) {
+    this.server =
+        new Server(
+            Protocol.HTTP,
+            port,
+            new Restlet() {
+              @Override
+              public void handle(Request request, Response response) {
+                if (!Method.GET.equals(request.getMethod())) {
+                  response.setStatus(Status.CLIENT_ERROR_METHOD_NOT_ALLOWED);
+                  return;
+                }
+                response.setEntity(registry.expose(), MediaType.TEXT_PLAIN);
+              }
+            });
+  }
+
+  public void start() throws Exception {
+    server.start();
+    LOGGER.info("Serving metrics on port " + server.getPort());
+  }
+
+  public void stop() {
+    try {
+      server.stop();
+    } catch (Exception e) {
+      LOGGER.error("Error while stopping metrics server", e);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+/** Metrics of the scheduler hot paths, in the registry exposed by {@link MetricsServer}. */
+public class SchedulerMetrics {
+
+  public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+  private static final double[] CYCLE_BUCKETS = {0.1, 0.5, 1, 2.5, 5, 10, 30, 60, 120, 300};
+  private static final double[] CALL_BUCKETS = {
+    0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+  };
+
+  private static final double[] STATE_BUCKETS = {
+    1, 10, 30, 60, 300, 600, 1800, 3600, 7200, 21600, 86400
+  };
+
+  public static final MetricFamily<Histogram> CYCLE_DURATION =
+      REGISTRY.histogram(
+          "saps_scheduler_cycle_duration_seconds",
+          "Duration of each execution of a scheduler pipeline.",
+          CYCLE_BUCKETS,
+          "pipeline");
+
+  public static final MetricFamily<Histogram> ARREBOL_REQUEST_DURATION =
+      REGISTRY.histogram(
+          "saps_scheduler_arrebol_request_duration_seconds",
+          "Duration of each HTTP request to Arrebol, failed or not.",
+          CALL_BUCKETS,
+          "operation");
+
+  public static final MetricFamily<Counter> ARREBOL_RETRIES =
+      REGISTRY.counter(
+          "saps_scheduler_arrebol_retries_total",
+          "Failed attempts of calls to Arrebol that were tried again.",
+          "operation");
+
+  public static final MetricFamily<Histogram> CATALOG_REQUEST_DURATION =
+      REGISTRY.histogram(
+          "saps_scheduler_catalog_request_duration_seconds",
+          "Duration of each call to the Catalog.",
+          CALL_BUCKETS,
+          "operation");
+
+  public static final Counter SUBMISSIONS =
+      REGISTRY
+          .counter("saps_scheduler_submissions_total", "Tasks submitted to Arrebol.")
+          .labels();
+
+  public static final Counter SUBMISSION_FAILURES =
+      REGISTRY
+          .counter(
+              "saps_scheduler_submission_failures_total",
+              "Tasks moved to failed because their submission to Arrebol failed.")
+          .labels();
+
+  public static final Counter ROLLBACKS =
+      REGISTRY
+          .counter(
+              "saps_scheduler_rollbacks_total",
+              "Tasks rolled back to their previous state to be submitted again.")
+          .labels();
+
+  public static final MetricFamily<Counter> TASK_TRANSITIONS =
+      REGISTRY.counter(
+          "saps_scheduler_task_transitions_total",
+          "Task state transitions applied by the scheduler.",
+          "from",
+          "to");
+
+  public static final MetricFamily<Histogram> TASK_STATE_DURATION =
+      REGISTRY.histogram(
+          "saps_scheduler_task_state_duration_seconds",
+          "Time tasks spent in a state before leaving it, when the time they entered it is known.",
+          STATE_BUCKETS,
+          "state");
+
+  public static final MetricFamily<Counter> JOB_NOTIFICATIONS =
+      REGISTRY.counter(
+          "saps_scheduler_job_notifications_total",
+          "Job status notifications received from Arrebol, by what was done with them.",
+          "outcome");
+
+  public static final MetricFamily<Gauge> JOBS_IN_FLIGHT =
+      REGISTRY.computedGauge(
+          "saps_scheduler_jobs_in_flight", "Jobs submitted to Arrebol and not finished yet.");
+
+  public static final SettableGauge FREE_SLOTS =
+      REGISTRY
+          .gauge(
+              "saps_scheduler_arrebol_free_slots",
+              "Free slots in Arrebol seen by the last submission cycle.")
+          .labels();
+}
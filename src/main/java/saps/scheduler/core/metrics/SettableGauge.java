@@ -0,0 +1,17 @@
+/* (C)2020 */
+package saps.scheduler.core.metrics;
+
+/** Gauge holding the last value set. */
+public class SettableGauge extends Gauge {
+
+  private volatile double value;
+
+  public void set(double value) {
+    this.value = value;
+  }
+
+  @Override
+  public double get() {
+    return value;
+  }
+}
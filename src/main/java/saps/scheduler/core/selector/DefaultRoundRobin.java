@@ -28,6 +28,11 @@ public class DefaultRoundRobin implements Selector {
     return selectedTasks;
   }
 
+  @Override
+  public long getAgingMillis() {
+    return 0;
+  }
+
   @Override
   public String version() {
     return "Default Round Robin";
@@ -16,6 +16,14 @@ public interface Selector {
    */
   public List<SapsImage> select(int count, Map<String, List<SapsImage>> tasks);
 
+  /**
+   * This function returns the time after which a waiting task goes ahead of the other tasks of its
+   * user, so the tasks given to the selector are cut in the same order it takes them.
+   *
+   * @return aging time in milliseconds, or 0 if tasks do not age
+   */
+  public long getAgingMillis();
+
   /**
    * This function returns selector version information
    *
@@ -0,0 +1,147 @@
+/* (C)2020 */
+package saps.scheduler.core.selector;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import saps.common.core.model.SapsImage;
+
+/**
+ * Groups tasks by user, in the form the selectors take them. Users keep the order they first appear
+ * in, and only the first tasks of each user in the scheduling order are kept and sorted. The lists
+ * of the users are reused from one grouping to the next, so an instance must be used by a single
+ * thread and the map it returns is only valid until the next grouping.
+ */
+public class TasksByUser {
+
+  /** Higher priority first, then newer first, for tasks that do not age. */
+  public static final Comparator<SapsImage> SCHEDULING_ORDER = schedulingOrder(0);
+
+  private final Map<String, List<SapsImage>> tasksByUser;
+  private Map<String, List<SapsImage>> buffers;
+  private Map<String, List<SapsImage>> spareBuffers;
+  private final SchedulingOrder order;
+  private final PriorityQueue<SapsImage> firstTasks;
+
+  public TasksByUser() {
+    this.tasksByUser = new LinkedHashMap<String, List<SapsImage>>();
+    this.buffers = new LinkedHashMap<String, List<SapsImage>>();
+    this.spareBuffers = new LinkedHashMap<String, List<SapsImage>>();
+    this.order = new SchedulingOrder(0);
+    this.firstTasks = new PriorityQueue<SapsImage>(11, Collections.reverseOrder(order));
+  }
+
+  /**
+   * This function returns the scheduling order of the tasks: tasks created before the aging limit
+   * come first, oldest first, as the selectors take them, and then the other tasks, higher
+   * priority first and then newer first.
+   *
+   * @param agedBefore aging limit in milliseconds since the epoch, or 0 if tasks do not age
+   * @return scheduling order
+   */
+  public static Comparator<SapsImage> schedulingOrder(long agedBefore) {
+    return new SchedulingOrder(agedBefore);
+  }
+
+  /**
+   * This function groups the tasks by user, as {@link #group(List, int, long)} does for tasks that
+   * do not age.
+   */
+  public Map<String, List<SapsImage>> group(List<SapsImage> tasks, int limitPerUser) {
+    return group(tasks, limitPerUser, 0);
+  }
+
+  /**
+   * This function groups the tasks by user, keeping for each user only its first tasks in the
+   * scheduling order, sorted in that order. Only these tasks are sorted, in O(n log limitPerUser).
+   *
+   * <p>The selection queries already return at most {@code limitPerUser} tasks of each user, so for
+   * them every list is just sorted and no task is dropped. The limit only trims uncut lists, such
+   * as the ones of the benchmarks.
+   *
+   * @param tasks tasks to be grouped
+   * @param limitPerUser max number of tasks kept for each user
+   * @param agedBefore aging limit in milliseconds since the epoch, or 0 if tasks do not age
+   * @return tasks of each user, valid until the next call
+   */
+  public Map<String, List<SapsImage>> group(
+      List<SapsImage> tasks, int limitPerUser, long agedBefore) {
+    order.agedBefore = agedBefore;
+
+    // Buffers of users absent from this grouping are dropped when the maps are swapped
+    Map<String, List<SapsImage>> current = spareBuffers;
+    current.clear();
+
+    for (SapsImage task : tasks) {
+      String user = task.getUser();
+      List<SapsImage> userTasks = current.get(user);
+
+      if (userTasks == null) {
+        userTasks = buffers.get(user);
+        if (userTasks == null) userTasks = new ArrayList<SapsImage>();
+        else userTasks.clear();
+        current.put(user, userTasks);
+      }
+
+      userTasks.add(task);
+    }
+
+    spareBuffers = buffers;
+    buffers = current;
+
+    tasksByUser.clear();
+    for (Map.Entry<String, List<SapsImage>> entry : buffers.entrySet()) {
+      keepFirstTasks(entry.getValue(), limitPerUser);
+      tasksByUser.put(entry.getKey(), entry.getValue());
+    }
+
+    return tasksByUser;
+  }
+
+  private void keepFirstTasks(List<SapsImage> userTasks, int limitPerUser) {
+    if (userTasks.size() <= limitPerUser) {
+      Collections.sort(userTasks, order);
+      return;
+    }
+
+    firstTasks.clear();
+    for (SapsImage task : userTasks) {
+      firstTasks.add(task);
+      if (firstTasks.size() > limitPerUser) firstTasks.poll();
+    }
+
+    // The heap gives the kept tasks from the last to the first in the scheduling order
+    userTasks.clear();
+    while (!firstTasks.isEmpty()) userTasks.add(firstTasks.poll());
+    Collections.reverse(userTasks);
+  }
+
+  private static class SchedulingOrder implements Comparator<SapsImage> {
+
+    private long agedBefore;
+
+    SchedulingOrder(long agedBefore) {
+      this.agedBefore = agedBefore;
+    }
+
+    @Override
+    public int compare(SapsImage task01, SapsImage task02) {
+      boolean aged01 = isAged(task01);
+      boolean aged02 = isAged(task02);
+      if (aged01 != aged02) return aged01 ? -1 : 1;
+      if (aged01) return task01.getCreationTime().compareTo(task02.getCreationTime());
+
+      int priorityCompare = Integer.compare(task02.getPriority(), task01.getPriority());
+      if (priorityCompare != 0) return priorityCompare;
+      else return task02.getCreationTime().compareTo(task01.getCreationTime());
+    }
+
+    private boolean isAged(SapsImage task) {
+      return task.getCreationTime() != null && task.getCreationTime().getTime() < agedBefore;
+    }
+  }
+}
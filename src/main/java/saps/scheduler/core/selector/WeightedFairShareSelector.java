@@ -0,0 +1,287 @@
+/* (C)2020 */
+package saps.scheduler.core.selector;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.scheduler.core.SchedulerPropertiesConstants;
+import saps.scheduler.core.SchedulerPropertiesUtil;
+
+/**
+ * Selector that shares the slots among users in proportion to their weights (users not weighted
+ * have weight 1), as a deficit round robin over virtual time: each selected task costs 1/weight of
+ * virtual time to its user, and the next task always comes from the user that would finish its next
+ * turn first. The virtual time of each user is kept between selections, so a user that got more
+ * slots than its share in a cycle waits for the others in the next one.
+ *
+ * <p>Each call is expected to be given tasks in a single state, and the virtual times are kept
+ * apart for each state, so the shares of the different states do not mix. A user without tasks
+ * in a state keeps its virtual time there until it has no tasks for longer than the idle expiry
+ * time, and then starts afresh.
+ *
+ * <p>Tasks of a user are selected in the given order, except that tasks waiting for longer than the
+ * aging time come first, oldest first, so old low priority tasks are not starved by newer ones.
+ *
+ * <p>Selecting k tasks among u users costs O(u + n + k log u), n being the number of tasks given.
+ */
+public class WeightedFairShareSelector implements Selector {
+
+  private static final double DEFAULT_WEIGHT = 1.0;
+  private static final long DEFAULT_AGING_SECONDS = TimeUnit.DAYS.toSeconds(1);
+  private static final long DEFAULT_IDLE_EXPIRY_SECONDS = TimeUnit.HOURS.toSeconds(1);
+
+  private static final String WEIGHTS_SEPARATOR = ",";
+  private static final String USER_WEIGHT_SEPARATOR = ":";
+
+  private static final Comparator<SapsImage> OLDEST_FIRST =
+      new Comparator<SapsImage>() {
+        @Override
+        public int compare(SapsImage task01, SapsImage task02) {
+          return task01.getCreationTime().compareTo(task02.getCreationTime());
+        }
+      };
+
+  private final Map<String, Double> weights;
+  private final long agingMillis;
+  private final long idleExpiryMillis;
+  private final Map<ImageTaskState, Map<String, UserShare>> sharesByState;
+
+  public WeightedFairShareSelector(Properties properties) {
+    this(
+        parseWeights(
+            properties.getProperty(SchedulerPropertiesConstants.SELECTOR_USER_WEIGHTS, "")),
+        TimeUnit.SECONDS.toMillis(
+            SchedulerPropertiesUtil.getLong(
+                properties,
+                SchedulerPropertiesConstants.SELECTOR_AGING_TIME,
+                DEFAULT_AGING_SECONDS)),
+        TimeUnit.SECONDS.toMillis(
+            SchedulerPropertiesUtil.getLong(
+                properties,
+                SchedulerPropertiesConstants.SELECTOR_IDLE_EXPIRY,
+                DEFAULT_IDLE_EXPIRY_SECONDS)));
+  }
+
+  /**
+   * @param weights weight of each user, users not in the map have weight 1
+   * @param agingMillis time after which a waiting task goes ahead of the other tasks of its user
+   */
+  public WeightedFairShareSelector(Map<String, Double> weights, long agingMillis) {
+    this(weights, agingMillis, TimeUnit.SECONDS.toMillis(DEFAULT_IDLE_EXPIRY_SECONDS));
+  }
+
+  /**
+   * @param weights weight of each user, users not in the map have weight 1
+   * @param agingMillis time after which a waiting task goes ahead of the other tasks of its user
+   * @param idleExpiryMillis time after which the virtual time of a user without tasks is forgotten
+   */
+  public WeightedFairShareSelector(
+      Map<String, Double> weights, long agingMillis, long idleExpiryMillis) {
+    for (Map.Entry<String, Double> weight : weights.entrySet()) {
+      if (!(weight.getValue() > 0))
+        throw new IllegalArgumentException(
+            "Weight of user [" + weight.getKey() + "] must be positive");
+    }
+    if (agingMillis <= 0 || idleExpiryMillis <= 0)
+      throw new IllegalArgumentException("Aging and idle expiry times must be positive");
+
+    this.weights = new HashMap<String, Double>(weights);
+    this.agingMillis = agingMillis;
+    this.idleExpiryMillis = idleExpiryMillis;
+    this.sharesByState = new EnumMap<ImageTaskState, Map<String, UserShare>>(ImageTaskState.class);
+  }
+
+  /**
+   * This function parses user weights in the format user:weight,user:weight.
+   *
+   * @param weights user weights
+   * @return weight by user
+   */
+  public static Map<String, Double> parseWeights(String weights) {
+    Map<String, Double> weightsByUser = new HashMap<String, Double>();
+
+    for (String userWeight : weights.split(WEIGHTS_SEPARATOR)) {
+      userWeight = userWeight.trim();
+      if (userWeight.isEmpty()) continue;
+
+      int separator = userWeight.lastIndexOf(USER_WEIGHT_SEPARATOR);
+      if (separator <= 0)
+        throw new IllegalArgumentException("User weight [" + userWeight + "] is not user:weight");
+
+      try {
+        weightsByUser.put(
+            userWeight.substring(0, separator).trim(),
+            Double.parseDouble(userWeight.substring(separator + 1).trim()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(
+            "Weight of user weight [" + userWeight + "] is not a number", e);
+      }
+    }
+
+    return weightsByUser;
+  }
+
+  @Override
+  public synchronized List<SapsImage> select(int count, Map<String, List<SapsImage>> tasks) {
+    List<SapsImage> selectedTasks = new ArrayList<SapsImage>(Math.max(0, count));
+    if (count <= 0) return selectedTasks;
+
+    ImageTaskState state = getState(tasks);
+    if (state == null) return selectedTasks;
+
+    long now = System.currentTimeMillis();
+    Map<String, UserShare> shares = getShares(state, now);
+
+    // Users that were idle start at the current virtual time, so they do not bank idle turns
+    double virtualTime = Double.MAX_VALUE;
+    for (Map.Entry<String, List<SapsImage>> entry : tasks.entrySet()) {
+      UserShare share = shares.get(entry.getKey());
+      if (!entry.getValue().isEmpty() && share != null && share.virtualTime < virtualTime)
+        virtualTime = share.virtualTime;
+    }
+    if (virtualTime == Double.MAX_VALUE) {
+      for (UserShare share : shares.values())
+        if (share.virtualTime < virtualTime) virtualTime = share.virtualTime;
+    }
+    if (virtualTime == Double.MAX_VALUE) virtualTime = 0;
+
+    long agedBefore = now - agingMillis;
+    List<UserQueue> users = new ArrayList<UserQueue>(tasks.size());
+    for (Map.Entry<String, List<SapsImage>> entry : tasks.entrySet()) {
+      if (entry.getValue().isEmpty()) continue;
+
+      UserShare share = shares.get(entry.getKey());
+      double start = share == null ? virtualTime : Math.max(virtualTime, share.virtualTime);
+      users.add(
+          new UserQueue(
+              entry.getKey(),
+              getWeight(entry.getKey()),
+              start,
+              toQueue(entry.getValue(), agedBefore)));
+    }
+
+    PriorityQueue<UserQueue> nextUsers = new PriorityQueue<UserQueue>(users);
+    while (count > 0 && !nextUsers.isEmpty()) {
+      UserQueue user = nextUsers.poll();
+      selectedTasks.add(user.tasks.pollFirst());
+      user.virtualTime = user.getNextVirtualTime();
+      count--;
+
+      if (!user.tasks.isEmpty()) nextUsers.add(user);
+    }
+
+    for (UserQueue user : users) shares.put(user.user, new UserShare(user.virtualTime, now));
+
+    return selectedTasks;
+  }
+
+  /** @return state of the first task given, or null if no task was given */
+  private static ImageTaskState getState(Map<String, List<SapsImage>> tasks) {
+    for (List<SapsImage> userTasks : tasks.values())
+      if (!userTasks.isEmpty()) return userTasks.get(0).getState();
+    return null;
+  }
+
+  /**
+   * This function gets the shares of the users in a state, forgetting the users without tasks for
+   * longer than the idle expiry time.
+   */
+  private Map<String, UserShare> getShares(ImageTaskState state, long now) {
+    Map<String, UserShare> shares = sharesByState.get(state);
+    if (shares == null) {
+      shares = new HashMap<String, UserShare>();
+      sharesByState.put(state, shares);
+    }
+
+    Iterator<UserShare> iterator = shares.values().iterator();
+    while (iterator.hasNext()) {
+      if (now - iterator.next().lastSelectionAt > idleExpiryMillis) iterator.remove();
+    }
+
+    return shares;
+  }
+
+  private double getWeight(String user) {
+    Double weight = weights.get(user);
+    return weight == null ? DEFAULT_WEIGHT : weight;
+  }
+
+  private static Deque<SapsImage> toQueue(List<SapsImage> userTasks, long agedBefore) {
+    Deque<SapsImage> queue = new ArrayDeque<SapsImage>(userTasks.size());
+    List<SapsImage> agedTasks = null;
+
+    for (SapsImage task : userTasks) {
+      if (task.getCreationTime() != null && task.getCreationTime().getTime() < agedBefore) {
+        if (agedTasks == null) agedTasks = new ArrayList<SapsImage>();
+        agedTasks.add(task);
+      } else {
+        queue.addLast(task);
+      }
+    }
+
+    if (agedTasks != null) {
+      Collections.sort(agedTasks, OLDEST_FIRST);
+      for (int i = agedTasks.size() - 1; i >= 0; i--) queue.addFirst(agedTasks.get(i));
+    }
+
+    return queue;
+  }
+
+  @Override
+  public long getAgingMillis() {
+    return agingMillis;
+  }
+
+  @Override
+  public String version() {
+    return "Weighted Fair Share";
+  }
+
+  private static class UserShare {
+
+    private final double virtualTime;
+    private final long lastSelectionAt;
+
+    UserShare(double virtualTime, long lastSelectionAt) {
+      this.virtualTime = virtualTime;
+      this.lastSelectionAt = lastSelectionAt;
+    }
+  }
+
+  private static class UserQueue implements Comparable<UserQueue> {
+
+    private final String user;
+    private final double weight;
+    private final Deque<SapsImage> tasks;
+    private double virtualTime;
+
+    UserQueue(String user, double weight, double virtualTime, Deque<SapsImage> tasks) {
+      this.user = user;
+      this.weight = weight;
+      this.virtualTime = virtualTime;
+      this.tasks = tasks;
+    }
+
+    double getNextVirtualTime() {
+      return virtualTime + 1 / weight;
+    }
+
+    @Override
+    public int compareTo(UserQueue other) {
+      int compare = Double.compare(getNextVirtualTime(), other.getNextVirtualTime());
+      return compare != 0 ? compare : user.compareTo(other.user);
+    }
+  }
+}
@@ -11,6 +11,12 @@ public interface Scheduler {
     */
     public void recovery();
 
+    /**
+    * This function reconciles, between submission cycles, the tasks left in a processing state
+    * without an Arrebol job id, as the recovery does at startup.
+    */
+    public void reconcile();
+
     /**
     * This function checks if each submitted job was finished. If exists finished jobs, for each job
     * is updates state in Catalog and removes a job by list of submitted jobs to Arrebol.
@@ -0,0 +1,68 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import saps.common.utils.ExecutionScriptTag;
+import saps.common.utils.ExecutionScriptTagUtil;
+
+public class ExecutionScriptTagRegistryTest {
+
+  private static final String TAGS_FILE = "resources/execution_script_tags.json";
+
+  private static final String[] REPOSITORIES = {
+    ExecutionScriptTagUtil.INPUT_DOWNLOADER,
+    ExecutionScriptTagUtil.PRE_PROCESSING,
+    ExecutionScriptTagUtil.PROCESSING
+  };
+
+  private ExecutionScriptTagRegistry registry;
+
+  @Before
+  public void setUp() {
+    registry = new ExecutionScriptTagRegistry(TAGS_FILE);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    registry.close();
+  }
+
+  @Test
+  public void testEveryTagMatchesExecutionScriptTagUtil() throws Exception {
+    String tagsFile = new String(Files.readAllBytes(Paths.get(TAGS_FILE)), StandardCharsets.UTF_8);
+    JSONObject tagsJson = new JSONObject(tagsFile);
+
+    for (String repository : REPOSITORIES) {
+      JSONArray tags = tagsJson.getJSONArray(repository);
+
+      for (int i = 0; i < tags.length(); i++) {
+        String tag = tags.getJSONObject(i).getString("name");
+        ExecutionScriptTag expected =
+            ExecutionScriptTagUtil.getExecutionScriptTag(TAGS_FILE, tag, repository);
+        ExecutionScriptTag actual = registry.get(repository, tag);
+
+        String message = "tag [" + tag + "] of repository [" + repository + "]";
+        assertEquals(message, expected.getTag(), actual.getTag());
+        assertEquals(message, expected.getDockerRepository(), actual.getDockerRepository());
+        assertEquals(message, expected.getDockerTag(), actual.getDockerTag());
+        assertEquals(message, expected.getType(), actual.getType());
+        assertEquals(message, expected.getMemoryUsage(), actual.getMemoryUsage());
+        assertEquals(message, expected.getCpuUsage(), actual.getCpuUsage());
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingTagIsRejected() {
+    registry.get(ExecutionScriptTagUtil.PROCESSING, "missing-tag");
+  }
+}
@@ -0,0 +1,164 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import saps.common.core.model.SapsImage;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.scheduler.core.arrebol.JobSubmitted;
+
+public class JobPollScheduleTest {
+
+  private static final long MIN_INTERVAL = 10;
+  private static final long MAX_INTERVAL = 100000;
+  private static final long RUNTIME = 10000;
+  private static final long TOLERANCE = 100;
+  private static final int SUCCESSES = 30;
+
+  private JobPollSchedule schedule;
+
+  @Before
+  public void setUp() {
+    schedule = new JobPollSchedule(MIN_INTERVAL, MAX_INTERVAL);
+  }
+
+  @Test
+  public void testPhaseWithoutEstimateIsPolledAtMinInterval() {
+    long now = System.currentTimeMillis();
+
+    assertEquals(
+        MIN_INTERVAL, schedule.getDelay(createJob("job", ImageTaskState.RUNNING, now), now));
+  }
+
+  @Test
+  public void testDelayHalvesDistanceToUsualRuntime() {
+    learnRuntime(ImageTaskState.RUNNING);
+    long now = System.currentTimeMillis();
+
+    long delay = schedule.getDelay(createJob("job", ImageTaskState.RUNNING, now), now);
+    assertTrue("delay " + delay, Math.abs(delay - RUNTIME / 2) <= TOLERANCE);
+
+    long laterDelay =
+        schedule.getDelay(createJob("job", ImageTaskState.RUNNING, now - RUNTIME / 2), now);
+    assertTrue("delay " + laterDelay, Math.abs(laterDelay - RUNTIME / 4) <= TOLERANCE);
+  }
+
+  @Test
+  public void testJobWithinUsualRuntimeIsPolledAtMinInterval() {
+    learnRuntime(ImageTaskState.RUNNING);
+    long now = System.currentTimeMillis();
+
+    assertEquals(
+        MIN_INTERVAL,
+        schedule.getDelay(createJob("job", ImageTaskState.RUNNING, now - RUNTIME), now));
+  }
+
+  @Test
+  public void testOverdueJobIsPolledLessOften() {
+    learnRuntime(ImageTaskState.RUNNING);
+    long now = System.currentTimeMillis();
+
+    long delay =
+        schedule.getDelay(createJob("job", ImageTaskState.RUNNING, now - 3 * RUNTIME), now);
+    assertTrue("delay " + delay, Math.abs(delay - RUNTIME) <= TOLERANCE);
+
+    assertEquals(
+        MAX_INTERVAL,
+        schedule.getDelay(createJob("job", ImageTaskState.RUNNING, now - 100 * RUNTIME), now));
+  }
+
+  @Test
+  public void testEstimatesAreKeptPerPhase() {
+    learnRuntime(ImageTaskState.RUNNING);
+    long now = System.currentTimeMillis();
+
+    assertEquals(
+        MIN_INTERVAL, schedule.getDelay(createJob("job", ImageTaskState.DOWNLOADING, now), now));
+  }
+
+  @Test
+  public void testTakenJobsAreNoLongerScheduled() {
+    JobSubmitted job = createJob("job", ImageTaskState.RUNNING, System.currentTimeMillis());
+    schedule = new JobPollSchedule(0, MAX_INTERVAL);
+
+    List<JobSubmitted> dueJobs = schedule.takeDueJobs(Collections.singletonList(job));
+
+    assertEquals(Collections.singletonList(job), dueJobs);
+    assertFalse(schedule.isScheduled(job));
+  }
+
+  @Test
+  public void testJobIsNotTakenBeforeItsDelay() {
+    learnRuntime(ImageTaskState.RUNNING);
+    JobSubmitted job = createJob("job", ImageTaskState.RUNNING, System.currentTimeMillis());
+    schedule.schedule(job);
+
+    assertTrue(schedule.takeDueJobs(Collections.singletonList(job)).isEmpty());
+    assertTrue(schedule.isScheduled(job));
+  }
+
+  @Test
+  public void testRetriedJobIsTakenAfterMinInterval() throws InterruptedException {
+    learnRuntime(ImageTaskState.RUNNING);
+    JobSubmitted job = createJob("job", ImageTaskState.RUNNING, System.currentTimeMillis());
+    schedule.schedule(job);
+    schedule.retry(job);
+    Thread.sleep(MIN_INTERVAL * 2);
+
+    assertEquals(
+        Collections.singletonList(job), schedule.takeDueJobs(Collections.singletonList(job)));
+  }
+
+  @Test
+  public void testForgottenJobIsNotScheduled() {
+    JobSubmitted job = createJob("job", ImageTaskState.RUNNING, System.currentTimeMillis());
+    schedule.schedule(job);
+    schedule.forget(job);
+
+    assertFalse(schedule.isScheduled(job));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaxIntervalBelowMinIntervalIsRejected() {
+    new JobPollSchedule(MIN_INTERVAL, MIN_INTERVAL - 1);
+  }
+
+  private void learnRuntime(ImageTaskState phase) {
+    for (int i = 0; i < SUCCESSES; i++)
+      schedule.recordSuccess(createJob("job-" + i, phase, System.currentTimeMillis() - RUNTIME));
+  }
+
+  private static JobSubmitted createJob(String jobId, ImageTaskState phase, long submittedAt) {
+    Timestamp creationTime = new Timestamp(submittedAt);
+    SapsImage task =
+        new SapsImage(
+            "task-" + jobId,
+            "landsat_8",
+            "215065",
+            new Date(submittedAt),
+            phase,
+            jobId,
+            "local",
+            0,
+            "user@saps",
+            "default",
+            "sha256:0",
+            "default",
+            "sha256:0",
+            "default",
+            "sha256:0",
+            creationTime,
+            creationTime,
+            SapsImage.AVAILABLE,
+            SapsImage.NON_EXISTENT_DATA);
+    return new JobSubmitted(jobId, task, submittedAt);
+  }
+}
@@ -0,0 +1,100 @@
+/* (C)2020 */
+package saps.scheduler.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import saps.common.core.model.enums.ImageTaskState;
+import saps.scheduler.core.TaskStateMachine.Event;
+import saps.scheduler.core.TaskStateMachine.Phase;
+
+public class TaskStateMachineTest {
+
+  @Test
+  public void testSubmitMovesWaitingStatesToRunningStates() {
+    assertNextState(ImageTaskState.CREATED, Event.SUBMIT, ImageTaskState.DOWNLOADING);
+    assertNextState(ImageTaskState.DOWNLOADED, Event.SUBMIT, ImageTaskState.PREPROCESSING);
+    assertNextState(ImageTaskState.READY, Event.SUBMIT, ImageTaskState.RUNNING);
+  }
+
+  @Test
+  public void testSucceedMovesRunningStatesToFinishedStates() {
+    assertNextState(ImageTaskState.DOWNLOADING, Event.SUCCEED, ImageTaskState.DOWNLOADED);
+    assertNextState(ImageTaskState.PREPROCESSING, Event.SUCCEED, ImageTaskState.READY);
+    assertNextState(ImageTaskState.RUNNING, Event.SUCCEED, ImageTaskState.FINISHED);
+  }
+
+  @Test
+  public void testFailMovesRunningStatesToFailed() {
+    assertNextState(ImageTaskState.DOWNLOADING, Event.FAIL, ImageTaskState.FAILED);
+    assertNextState(ImageTaskState.PREPROCESSING, Event.FAIL, ImageTaskState.FAILED);
+    assertNextState(ImageTaskState.RUNNING, Event.FAIL, ImageTaskState.FAILED);
+  }
+
+  @Test
+  public void testRollBackMovesRunningStatesToWaitingStates() {
+    assertNextState(ImageTaskState.DOWNLOADING, Event.ROLL_BACK, ImageTaskState.CREATED);
+    assertNextState(ImageTaskState.PREPROCESSING, Event.ROLL_BACK, ImageTaskState.DOWNLOADED);
+    assertNextState(ImageTaskState.RUNNING, Event.ROLL_BACK, ImageTaskState.READY);
+  }
+
+  @Test
+  public void testEveryOtherTransitionIsRejected() {
+    for (Event event : Event.values()) {
+      for (ImageTaskState state : ImageTaskState.values()) {
+        if (isValid(state, event)) continue;
+
+        try {
+          TaskStateMachine.getNextState(state, event);
+          fail("Task in state [" + state + "] should not " + event);
+        } catch (IllegalStateException e) {
+          // expected
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTransitionReturnsNextState() {
+    TaskStateMachine stateMachine = new TaskStateMachine();
+
+    assertEquals(
+        ImageTaskState.DOWNLOADING,
+        stateMachine.transition(ImageTaskState.CREATED, Event.SUBMIT, 0));
+    assertEquals(
+        ImageTaskState.FINISHED,
+        stateMachine.transition(
+            ImageTaskState.RUNNING, Event.SUCCEED, System.currentTimeMillis() - 1000));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTransitionRejectsInvalidEvent() {
+    new TaskStateMachine().transition(ImageTaskState.FINISHED, Event.SUBMIT, 0);
+  }
+
+  @Test
+  public void testPhaseOfRunningStates() {
+    assertEquals(Phase.INPUT_DOWNLOADING, TaskStateMachine.getPhase(ImageTaskState.DOWNLOADING));
+    assertEquals(Phase.PREPROCESSING, TaskStateMachine.getPhase(ImageTaskState.PREPROCESSING));
+    assertEquals(Phase.PROCESSING, TaskStateMachine.getPhase(ImageTaskState.RUNNING));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testNoPhaseRunsInWaitingState() {
+    TaskStateMachine.getPhase(ImageTaskState.READY);
+  }
+
+  private static boolean isValid(ImageTaskState state, Event event) {
+    for (Phase phase : Phase.values()) {
+      if (event == Event.SUBMIT && state == phase.getWaitingState()) return true;
+      if (event != Event.SUBMIT && state == phase.getRunningState()) return true;
+    }
+    return false;
+  }
+
+  private static void assertNextState(
+      ImageTaskState state, Event event, ImageTaskState expectedNextState) {
+    assertEquals(expectedNextState, TaskStateMachine.getNextState(state, event));
+  }
+}
@@ -0,0 +1,98 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.gson.stream.JsonReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Test;
+
+public class JobStatusParserTest {
+
+  @Test
+  public void testParsesJobAndSkipsOtherFields() throws IOException {
+    JobStatus job =
+        parseJob(
+            "{'id': 'job-1', 'label': 'saps', 'job_state': 'FINISHED', 'tasks': [{"
+                + "'id': 'task-1', 'metadata': {'a': [1, 2]}, 'task_spec': {"
+                + "'requirements': {'image': 'saps'}, 'commands': ["
+                + "{'command': 'run.sh', 'state': 'FINISHED', 'exit_code': 0},"
+                + "{'command': 'clean.sh', 'state': 'FAILED', 'exit_code': 137}]}}]}");
+
+    assertEquals("job-1", job.getId());
+    assertEquals("FINISHED", job.getJobState());
+    assertEquals(2, job.getCommands().size());
+    assertEquals("FINISHED", job.getCommands().get(0).getState());
+    assertEquals(Integer.valueOf(0), job.getCommands().get(0).getExitCode());
+    assertEquals("FAILED", job.getCommands().get(1).getState());
+    assertEquals(Integer.valueOf(137), job.getCommands().get(1).getExitCode());
+  }
+
+  @Test
+  public void testMissingExitCodeIsNull() throws IOException {
+    JobStatus job =
+        parseJob(
+            "{'id': 'job-1', 'job_state': 'RUNNING', 'tasks': [{'task_spec': {"
+                + "'commands': [{'state': 'RUNNING'}]}}]}");
+
+    assertEquals(1, job.getCommands().size());
+    assertEquals("RUNNING", job.getCommands().get(0).getState());
+    assertNull(job.getCommands().get(0).getExitCode());
+  }
+
+  @Test
+  public void testNullExitCodeIsNull() throws IOException {
+    JobStatus job =
+        parseJob(
+            "{'id': 'job-1', 'job_state': 'RUNNING', 'tasks': [{'task_spec': {"
+                + "'commands': [{'state': null, 'exit_code': null}]}}]}");
+
+    assertEquals(1, job.getCommands().size());
+    assertNull(job.getCommands().get(0).getState());
+    assertNull(job.getCommands().get(0).getExitCode());
+  }
+
+  @Test
+  public void testMissingAndNullFieldsAreNull() throws IOException {
+    JobStatus job = parseJob("{'id': null, 'tasks': null}");
+
+    assertNull(job.getId());
+    assertNull(job.getJobState());
+    assertEquals(0, job.getCommands().size());
+  }
+
+  @Test
+  public void testNullJobIsNull() throws IOException {
+    JsonReader reader = createReader("[null]");
+    reader.beginArray();
+
+    assertNull(JobStatusParser.parseJob(reader));
+  }
+
+  @Test
+  public void testParsesJobsAndSkipsNullJobs() throws IOException {
+    List<JobStatus> jobs =
+        JobStatusParser.parseJobs(
+            createReader("[{'id': 'job-1', 'job_state': 'FINISHED'}, null, {'id': 'job-2'}]"));
+
+    assertEquals(2, jobs.size());
+    assertEquals("job-1", jobs.get(0).getId());
+    assertEquals("job-2", jobs.get(1).getId());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testJobsThatAreNotListAreRejected() throws IOException {
+    JobStatusParser.parseJobs(createReader("{'id': 'job-1'}"));
+  }
+
+  private static JobStatus parseJob(String json) throws IOException {
+    return JobStatusParser.parseJob(createReader(json));
+  }
+
+  private static JsonReader createReader(String json) {
+    return new JsonReader(new StringReader(json.replace('\'', '"')));
+  }
+}
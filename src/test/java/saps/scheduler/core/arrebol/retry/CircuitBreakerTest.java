@@ -0,0 +1,105 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+  private static final int FAILURE_THRESHOLD = 3;
+  private static final long OPEN_MILLIS = 50;
+
+  private CircuitBreaker circuitBreaker;
+
+  @Before
+  public void setUp() {
+    circuitBreaker = new CircuitBreaker(FAILURE_THRESHOLD, OPEN_MILLIS);
+  }
+
+  @Test
+  public void testStaysClosedBelowThreshold() {
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) fail();
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void testSuccessResetsConsecutiveFailures() {
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) fail();
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onSuccess();
+    for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) fail();
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+  }
+
+  @Test
+  public void testOpensAtThresholdAndFailsFast() {
+    open();
+
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    assertTrue(circuitBreaker.isOpen());
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void testHalfOpenLetsSingleProbeThrough() throws InterruptedException {
+    open();
+    Thread.sleep(OPEN_MILLIS * 2);
+
+    assertFalse(circuitBreaker.isOpen());
+    assertTrue(circuitBreaker.tryAcquire());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void testProbeSuccessClosesCircuit() throws InterruptedException {
+    open();
+    Thread.sleep(OPEN_MILLIS * 2);
+
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onSuccess();
+
+    assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    assertTrue(circuitBreaker.tryAcquire());
+    assertTrue(circuitBreaker.tryAcquire());
+  }
+
+  @Test
+  public void testProbeFailureReopensCircuit() throws InterruptedException {
+    open();
+    Thread.sleep(OPEN_MILLIS * 2);
+
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+
+    assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+    assertTrue(circuitBreaker.isOpen());
+    assertFalse(circuitBreaker.tryAcquire());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPositiveThresholdIsRejected() {
+    new CircuitBreaker(0, OPEN_MILLIS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPositiveOpenTimeIsRejected() {
+    new CircuitBreaker(FAILURE_THRESHOLD, 0);
+  }
+
+  private void fail() {
+    assertTrue(circuitBreaker.tryAcquire());
+    circuitBreaker.onFailure();
+  }
+
+  private void open() {
+    for (int i = 0; i < FAILURE_THRESHOLD; i++) fail();
+  }
+}
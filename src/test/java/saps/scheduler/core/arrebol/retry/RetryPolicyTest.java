@@ -0,0 +1,68 @@
+/* (C)2020 */
+package saps.scheduler.core.arrebol.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class RetryPolicyTest {
+
+  private static final long BASE_DELAY = 100;
+  private static final long MAX_DELAY = 10000;
+  private static final long DEADLINE = 60000;
+  private static final int SAMPLES = 100;
+
+  @Test
+  public void testDelayDoublesUpToMaxDelay() {
+    RetryPolicy retryPolicy = new RetryPolicy(BASE_DELAY, MAX_DELAY, DEADLINE);
+
+    for (int attempt = 0; attempt < 40; attempt++) {
+      long cap = Math.min(MAX_DELAY, BASE_DELAY << attempt);
+      assertDelayBetween(retryPolicy, attempt, cap / 2, cap);
+    }
+  }
+
+  @Test
+  public void testDelayNeverExceedsMaxDelay() {
+    RetryPolicy retryPolicy = new RetryPolicy(BASE_DELAY, MAX_DELAY, DEADLINE);
+
+    assertDelayBetween(retryPolicy, Integer.MAX_VALUE, MAX_DELAY / 2, MAX_DELAY);
+  }
+
+  @Test
+  public void testOverflowingDelayFallsBackToMaxDelay() {
+    RetryPolicy retryPolicy = new RetryPolicy(1L << 40, Long.MAX_VALUE, DEADLINE);
+
+    assertDelayBetween(retryPolicy, 30, Long.MAX_VALUE / 2, Long.MAX_VALUE);
+  }
+
+  @Test
+  public void testDeadline() {
+    assertEquals(DEADLINE, new RetryPolicy(BASE_DELAY, MAX_DELAY, DEADLINE).getDeadlineMillis());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPositiveBaseDelayIsRejected() {
+    new RetryPolicy(0, MAX_DELAY, DEADLINE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaxDelayBelowBaseDelayIsRejected() {
+    new RetryPolicy(BASE_DELAY, BASE_DELAY - 1, DEADLINE);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPositiveDeadlineIsRejected() {
+    new RetryPolicy(BASE_DELAY, MAX_DELAY, 0);
+  }
+
+  private static void assertDelayBetween(RetryPolicy retryPolicy, int attempt, long min, long max) {
+    for (int i = 0; i < SAMPLES; i++) {
+      long delay = retryPolicy.getDelayMillis(attempt);
+      assertTrue(
+          "delay " + delay + " of attempt " + attempt + " not in [" + min + ", " + max + "]",
+          delay >= min && delay <= max);
+    }
+  }
+}